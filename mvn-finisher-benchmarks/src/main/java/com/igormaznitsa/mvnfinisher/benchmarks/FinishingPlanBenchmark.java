@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher.benchmarks;
+
+import com.igormaznitsa.mvnfinisher.FinishingProbe;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Discovery of finishing tasks in reactor of N projects with M plugin executions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FinishingPlanBenchmark {
+
+  @Param( {"10", "100", "1000"})
+  public int projects;
+
+  @Param( {"1", "10"})
+  public int executions;
+
+  private FinishingProbe probe;
+
+  @Setup
+  public void setup() {
+    this.probe = FinishingProbe.of(
+        SyntheticReactor.makeSession(new File(System.getProperty("java.io.tmpdir")), this.projects, this.executions, 10),
+        new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+  }
+
+  @Benchmark
+  public int makeFinishingPlan() {
+    return this.probe.makeFinishingPlan();
+  }
+}
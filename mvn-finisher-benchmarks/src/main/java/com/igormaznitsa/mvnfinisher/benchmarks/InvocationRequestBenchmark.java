@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher.benchmarks;
+
+import com.igormaznitsa.mvnfinisher.FinishingProbe;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.shared.invoker.CommandLineConfigurationException;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.MavenCommandLineBuilder;
+import org.apache.maven.shared.utils.cli.Commandline;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Preparation of external maven call for finishing task, process is not started.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvocationRequestBenchmark {
+
+  private File folder;
+  private File mavenHome;
+  private FinishingProbe probe;
+
+  @Setup
+  public void setup() throws IOException {
+    this.folder = Files.createTempDirectory("mvn-finisher-bench").toFile();
+
+    // fake maven home, command line builder checks only existence of executable
+    this.mavenHome = new File(this.folder, "maven");
+    final File executable = new File(this.mavenHome, "bin" + File.separatorChar + "mvn");
+    Files.createDirectories(executable.getParentFile().toPath());
+    Files.createFile(executable.toPath());
+
+    final MavenSession session = SyntheticReactor.makeSession(this.folder, 1, 2, 50);
+    final File pom = session.getProjects().get(0).getFile();
+    Files.createDirectories(pom.getParentFile().toPath());
+    Files.createFile(pom.toPath());
+
+    this.probe = FinishingProbe.of(session, new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+    this.probe.selectTask(0);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(this.folder.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public InvocationRequest makeRequest() {
+    return this.probe.makeInvocationRequest(120);
+  }
+
+  @Benchmark
+  public Commandline makeCommandLine() throws CommandLineConfigurationException {
+    final InvocationRequest request = this.probe.makeInvocationRequest(120);
+    final MavenCommandLineBuilder builder = new MavenCommandLineBuilder();
+    builder.setMavenHome(this.mavenHome);
+    return builder.build(request);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher.benchmarks;
+
+import com.igormaznitsa.mvnfinisher.FinishingProbe;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Capture of large finishing task output with and without log file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputCaptureBenchmark {
+
+  @Param( {"10000", "100000"})
+  public int lines;
+
+  @Param( {"none", "plain", "gzip"})
+  public String log;
+
+  private String[] output;
+  private File logFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.output = new String[this.lines];
+    for (int i = 0; i < this.lines; i++) {
+      this.output[i] = i % 50 == 0
+          ? "[INFO] --- bench-maven-plugin:1.0.0:goal (execution-" + i + ") @ project-0 ---"
+          : "[INFO] Some output line of finishing task with number " + i;
+    }
+    this.logFile = File.createTempFile("mvn-finisher-bench", ".log");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (!this.logFile.delete()) {
+      this.logFile.deleteOnExit();
+    }
+  }
+
+  @Benchmark
+  public long capture() throws IOException {
+    return FinishingProbe.captureOutput(this.output, "none".equals(this.log) ? null : this.logFile, "gzip".equals(this.log));
+  }
+}
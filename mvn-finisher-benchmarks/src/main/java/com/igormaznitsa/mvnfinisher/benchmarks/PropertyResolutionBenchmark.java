@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher.benchmarks;
+
+import com.igormaznitsa.mvnfinisher.FinishingProbe;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of layered extension configuration from project, system and user properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyResolutionBenchmark {
+
+  @Param( {"10", "100"})
+  public int properties;
+
+  private MavenProject project;
+  private FinishingProbe probe;
+
+  @Setup
+  public void setup() {
+    final MavenSession session = SyntheticReactor.makeSession(new File(System.getProperty("java.io.tmpdir")), 1, 1, this.properties);
+    this.project = session.getProjects().get(0);
+    this.probe = FinishingProbe.of(session, new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+    this.probe.resolveProjectConfig(this.project);
+  }
+
+  @Benchmark
+  public Object resolveSessionConfig() {
+    return this.probe.resolveSessionConfig();
+  }
+
+  @Benchmark
+  public Object resolveProjectConfig() {
+    return this.probe.resolveProjectConfig(this.project);
+  }
+
+  @Benchmark
+  public String findExistingProperty() {
+    return this.probe.findProjectProperty(FinishingProbe.PROPERTY_SAVE_LOG_GZIP, "false");
+  }
+
+  @Benchmark
+  public String findMissingProperty() {
+    return this.probe.findProjectProperty(FinishingProbe.PROPERTY_TASK_TIMEOUT, "120");
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher.benchmarks;
+
+import com.igormaznitsa.mvnfinisher.FinishingProbe;
+import com.igormaznitsa.mvnfinisher.MvnFinisherLifecycleParticipant;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.ProjectDependencyGraph;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generates maven session of synthetic reactor, every project depends on the previous one.
+ */
+final class SyntheticReactor {
+
+  private static final String[] PHASES = new String[] {
+      "validate",
+      MvnFinisherLifecycleParticipant.FINISHING_PHASE,
+      "package",
+      MvnFinisherLifecycleParticipant.FINISHING_PHASE_OK,
+      "install",
+      MvnFinisherLifecycleParticipant.FINISHING_PHASE_ERROR,
+      "deploy",
+      MvnFinisherLifecycleParticipant.FINISHING_PHASE_FORCE
+  };
+
+  private SyntheticReactor() {
+  }
+
+  static MavenSession makeSession(
+      final File baseDirectory,
+      final int projects,
+      final int executionsPerProject,
+      final int propertiesPerProject
+  ) {
+    final List<MavenProject> projectList = new ArrayList<>();
+    for (int i = 0; i < projects; i++) {
+      projectList.add(makeProject(baseDirectory, i, executionsPerProject, propertiesPerProject));
+    }
+
+    final MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+    request.setBaseDirectory(baseDirectory);
+    final Properties systemProperties = new Properties();
+    systemProperties.putAll(System.getProperties());
+    request.setSystemProperties(systemProperties);
+    final Properties userProperties = new Properties();
+    for (int i = 0; i < propertiesPerProject; i++) {
+      userProperties.setProperty("user.property." + i, "value" + i);
+    }
+    request.setUserProperties(userProperties);
+
+    @SuppressWarnings("deprecation") final MavenSession session = new MavenSession(null, request, new DefaultMavenExecutionResult(), projectList);
+    session.setProjectDependencyGraph(new ChainGraph(projectList));
+    return session;
+  }
+
+  private static MavenProject makeProject(
+      final File baseDirectory,
+      final int index,
+      final int executions,
+      final int properties
+  ) {
+    final Model model = new Model();
+    model.setGroupId("com.igormaznitsa.bench");
+    model.setArtifactId("project-" + index);
+    model.setVersion("1.0.0");
+    model.setPackaging("jar");
+
+    final File projectFolder = new File(baseDirectory, "project-" + index);
+    final Build build = new Build();
+    build.setDirectory(new File(projectFolder, "target").getAbsolutePath());
+    model.setBuild(build);
+
+    final Plugin plugin = new Plugin();
+    plugin.setGroupId("com.igormaznitsa.bench");
+    plugin.setArtifactId("bench-maven-plugin");
+    plugin.setVersion("1.0.0");
+    for (int i = 0; i < executions; i++) {
+      final PluginExecution execution = new PluginExecution();
+      execution.setId("execution-" + i);
+      execution.setPhase(PHASES[i % PHASES.length]);
+      execution.addGoal("goal");
+      plugin.addExecution(execution);
+    }
+    build.addPlugin(plugin);
+
+    for (int i = 0; i < properties; i++) {
+      model.addProperty("project.property." + i, "value" + i);
+    }
+    model.addProperty(FinishingProbe.PROPERTY_SAVE_LOG_GZIP, "true");
+
+    final MavenProject project = new MavenProject(model);
+    project.setFile(new File(projectFolder, "pom.xml"));
+    return project;
+  }
+
+  private static final class ChainGraph implements ProjectDependencyGraph {
+    private final List<MavenProject> projects;
+    private final Map<MavenProject, Integer> indexes = new IdentityHashMap<>();
+
+    private ChainGraph(final List<MavenProject> projects) {
+      this.projects = projects;
+      for (int i = 0; i < projects.size(); i++) {
+        this.indexes.put(projects.get(i), i);
+      }
+    }
+
+    @Override
+    public List<MavenProject> getSortedProjects() {
+      return Collections.unmodifiableList(this.projects);
+    }
+
+    @Override
+    public List<MavenProject> getDownstreamProjects(final MavenProject project, final boolean transitive) {
+      final int index = this.indexes.get(project);
+      if (index + 1 >= this.projects.size()) {
+        return Collections.emptyList();
+      }
+      return transitive
+          ? this.projects.subList(index + 1, this.projects.size())
+          : Collections.singletonList(this.projects.get(index + 1));
+    }
+
+    @Override
+    public List<MavenProject> getUpstreamProjects(final MavenProject project, final boolean transitive) {
+      final int index = this.indexes.get(project);
+      if (index == 0) {
+        return Collections.emptyList();
+      }
+      return transitive
+          ? this.projects.subList(0, index)
+          : Collections.singletonList(this.projects.get(index - 1));
+    }
+  }
+}
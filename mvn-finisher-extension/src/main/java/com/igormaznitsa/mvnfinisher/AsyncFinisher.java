@@ -0,0 +1,416 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import static com.igormaznitsa.mvnfinisher.FinishingReportWriter.quote;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.shared.utils.cli.Commandline;
+
+/**
+ * Executes finishing tasks of phase finish-async in detached JVM. Plan of tasks is written by the extension into properties file,
+ * the detached process executes tasks one by one and writes progress into JSON status file. The process uses only JDK classes and classes of the extension.
+ */
+final class AsyncFinisher {
+
+  static final String PLAN_FILE_NAME = "mvn.finisher.async.plan.properties";
+  static final String STATUS_FILE_NAME = "mvn.finisher.async.status.json";
+  static final String OUTPUT_FILE_NAME = "mvn.finisher.async.log";
+
+  static final String STATE_PENDING = "pending";
+  static final String STATE_RUNNING = "running";
+  static final String STATE_OK = "ok";
+  static final String STATE_ERROR = "error";
+  static final String STATE_TIMEOUT = "timeout";
+  static final String STATE_COMPLETED = "completed";
+
+  /**
+   * Process is started in new session without controlling terminal, signals sent to process group of the build don't reach it.
+   */
+  static final String DETACH_SETSID = "setsid";
+  /**
+   * Process ignores hangup but stays in process group of the build, it is killed if the whole group is killed.
+   */
+  static final String DETACH_NOHUP = "nohup";
+  /**
+   * Process is started by Windows command interpreter and is not child of the build.
+   */
+  static final String DETACH_START = "start";
+  /**
+   * Process is plain child of the build.
+   */
+  static final String DETACH_NONE = "none";
+
+  private final File statusFile;
+  private final List<Entry> entries;
+  private final String detach;
+  private final String owner;
+  private final long startTime;
+  private String state = STATE_RUNNING;
+  private long endTime;
+
+  private AsyncFinisher(final File statusFile, final List<Entry> entries, final String detach) {
+    this.statusFile = statusFile;
+    this.entries = entries;
+    this.detach = detach;
+    this.owner = ManagementFactory.getRuntimeMXBean().getName();
+    this.startTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Write plan file and start detached JVM to execute it. The JVM is started through setsid (or nohup if there is no setsid) on POSIX
+   * systems and through start command on Windows, but it still can be killed by tools which kill whole control group or job object of the build.
+   *
+   * @param folder  folder for plan, status and output files
+   * @param entries tasks to be executed in the order
+   * @return started process
+   * @throws IOException if plan can't be written or process can't be started
+   */
+  static Process start(final File folder, final List<Entry> entries) throws IOException {
+    if (!folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Can't create folder: " + folder);
+    }
+    final File planFile = new File(folder, PLAN_FILE_NAME);
+    final File statusFile = new File(folder, STATUS_FILE_NAME);
+    final List<String> command = new ArrayList<>();
+    final String detach = addDetachCommand(command);
+    writePlan(planFile, statusFile, entries, detach);
+    new AsyncFinisher(statusFile, entries, detach).writeStatus(STATE_PENDING);
+
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+    command.add("-Xmx64m");
+    command.add("-cp");
+    command.add(makeClassPath());
+    command.add(AsyncFinisher.class.getName());
+    command.add(planFile.getAbsolutePath());
+
+    final File output = new File(folder, OUTPUT_FILE_NAME);
+    return new ProcessBuilder(command)
+        .directory(folder)
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.to(output))
+        .redirectInput(ProcessBuilder.Redirect.from(nullFile()))
+        .start();
+  }
+
+  /**
+   * Add command which starts process out of process group of the build.
+   *
+   * @return detach mode
+   */
+  private static String addDetachCommand(final List<String> command) {
+    if (File.separatorChar == '\\') {
+      command.addAll(Arrays.asList("cmd", "/c", "start", "", "/b"));
+      return DETACH_START;
+    }
+    final File setsid = findExecutable("setsid");
+    if (setsid != null) {
+      command.add(setsid.getAbsolutePath());
+      return DETACH_SETSID;
+    }
+    final File nohup = findExecutable("nohup");
+    if (nohup != null) {
+      command.add(nohup.getAbsolutePath());
+      return DETACH_NOHUP;
+    }
+    return DETACH_NONE;
+  }
+
+  private static File findExecutable(final String name) {
+    final String path = System.getenv("PATH");
+    if (path != null) {
+      for (final String folder : path.split(File.pathSeparator)) {
+        final File file = new File(folder, name);
+        if (!folder.isEmpty() && file.isFile() && file.canExecute()) {
+          return file;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static File nullFile() {
+    return new File(File.separatorChar == '\\' ? "NUL" : "/dev/null");
+  }
+
+  private static String makeClassPath() throws IOException {
+    // process runner of the extension refers maven-shared-utils classes
+    final Set<String> paths = new LinkedHashSet<>();
+    for (final Class<?> klazz : new Class<?>[] {AsyncFinisher.class, Commandline.class}) {
+      try {
+        paths.add(new File(klazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath());
+      } catch (URISyntaxException | RuntimeException ex) {
+        throw new IOException("Can't find class path of " + klazz.getName(), ex);
+      }
+    }
+    return String.join(File.pathSeparator, paths);
+  }
+
+  static void writePlan(final File planFile, final File statusFile, final List<Entry> entries, final String detach) throws IOException {
+    final Properties properties = new Properties();
+    properties.setProperty("status", statusFile.getAbsolutePath());
+    properties.setProperty("detach", detach);
+    storeEntries(properties, entries);
+    try (final OutputStream out = Files.newOutputStream(planFile.toPath())) {
+      properties.store(out, "mvn-finisher async finishing plan");
+    }
+  }
+
+  static AsyncFinisher readPlan(final File planFile) throws IOException {
+    final Properties properties = new Properties();
+    try (final InputStream in = Files.newInputStream(planFile.toPath())) {
+      properties.load(in);
+    }
+    return new AsyncFinisher(new File(properties.getProperty("status")), loadEntries(properties), properties.getProperty("detach", DETACH_NONE));
+  }
+
+  static void storeEntries(final Properties properties, final List<Entry> entries) {
+    properties.setProperty("tasks", Integer.toString(entries.size()));
+    for (int i = 0; i < entries.size(); i++) {
+      final Entry entry = entries.get(i);
+      final String prefix = "task." + i + '.';
+      properties.setProperty(prefix + "projectId", entry.projectId);
+      properties.setProperty(prefix + "executionId", entry.executionId);
+      properties.setProperty(prefix + "phase", entry.phase);
+      properties.setProperty(prefix + "folder", entry.folder.getAbsolutePath());
+      properties.setProperty(prefix + "log", entry.logFile.getAbsolutePath());
+      properties.setProperty(prefix + "timeout", Long.toString(entry.timeoutMs));
+      properties.setProperty(prefix + "command", Integer.toString(entry.command.size()));
+      for (int c = 0; c < entry.command.size(); c++) {
+        properties.setProperty(prefix + "command." + c, entry.command.get(c));
+      }
+      int env = 0;
+      for (final Map.Entry<String, String> e : entry.environment.entrySet()) {
+        properties.setProperty(prefix + "env." + env + ".name", e.getKey());
+        properties.setProperty(prefix + "env." + env + ".value", e.getValue());
+        env++;
+      }
+      properties.setProperty(prefix + "env", Integer.toString(env));
+    }
+  }
+
+  static List<Entry> loadEntries(final Properties properties) {
+    final int tasks = Integer.parseInt(properties.getProperty("tasks", "0"));
+    final List<Entry> entries = new ArrayList<>();
+    for (int i = 0; i < tasks; i++) {
+      final String prefix = "task." + i + '.';
+      final List<String> command = new ArrayList<>();
+      final int commandSize = Integer.parseInt(properties.getProperty(prefix + "command", "0"));
+      for (int c = 0; c < commandSize; c++) {
+        command.add(properties.getProperty(prefix + "command." + c));
+      }
+      final Map<String, String> environment = new LinkedHashMap<>();
+      final int envSize = Integer.parseInt(properties.getProperty(prefix + "env", "0"));
+      for (int e = 0; e < envSize; e++) {
+        environment.put(properties.getProperty(prefix + "env." + e + ".name"), properties.getProperty(prefix + "env." + e + ".value"));
+      }
+      entries.add(new Entry(
+          properties.getProperty(prefix + "projectId"),
+          properties.getProperty(prefix + "executionId"),
+          properties.getProperty(prefix + "phase"),
+          new File(properties.getProperty(prefix + "folder")),
+          command,
+          environment,
+          Long.parseLong(properties.getProperty(prefix + "timeout")),
+          new File(properties.getProperty(prefix + "log"))));
+    }
+    return entries;
+  }
+
+  public static void main(final String... args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Expected path to async finishing plan file");
+      System.exit(2);
+    }
+    final AsyncFinisher finisher = readPlan(new File(args[0]));
+    System.exit(finisher.execute() ? 0 : 1);
+  }
+
+  private boolean execute() throws IOException {
+    boolean ok = true;
+    this.writeStatus(STATE_RUNNING);
+    for (final Entry entry : this.entries) {
+      entry.state = STATE_RUNNING;
+      entry.startTime = System.currentTimeMillis();
+      this.writeStatus(STATE_RUNNING);
+      System.out.println("Executing finishing task " + entry.executionId + " of " + entry.projectId);
+      try {
+        entry.state = execute(entry, entry.timeoutMs, Long.MAX_VALUE);
+      } catch (IOException ex) {
+        System.out.println("Can't start finishing task " + entry.executionId + ": " + ex.getMessage());
+        entry.state = STATE_ERROR;
+      }
+      entry.time = System.currentTimeMillis() - entry.startTime;
+      ok &= STATE_OK.equals(entry.state);
+      System.out.println("Finishing task " + entry.executionId + " of " + entry.projectId + ": " + entry.state);
+    }
+    this.endTime = System.currentTimeMillis();
+    this.writeStatus(STATE_COMPLETED);
+    return ok;
+  }
+
+  /**
+   * Execute task in external process, its output is written into log file of the task.
+   *
+   * @param deadline time in milliseconds when kill of timed out process must be completed, Long.MAX_VALUE if not limited
+   * @return final state of the task
+   * @throws IOException if process can't be started
+   */
+  static String execute(final Entry entry, final long timeoutMs, final long deadline) throws IOException {
+    final File logFolder = entry.logFile.getParentFile();
+    if (logFolder != null && !logFolder.isDirectory() && !logFolder.mkdirs()) {
+      throw new IOException("Can't create log folder: " + logFolder);
+    }
+    final ProcessBuilder builder = new ProcessBuilder(entry.command)
+        .directory(entry.folder)
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.to(entry.logFile))
+        .redirectInput(ProcessBuilder.Redirect.from(nullFile()));
+    builder.environment().putAll(entry.environment);
+    final Process process = builder.start();
+    try {
+      if (process.waitFor(Math.max(0L, timeoutMs), TimeUnit.MILLISECONDS)) {
+        entry.exitCode = process.exitValue();
+        return entry.exitCode == 0 ? STATE_OK : STATE_ERROR;
+      }
+      ProcessRunner.killTree(process, deadline);
+      return STATE_TIMEOUT;
+    } catch (InterruptedException ex) {
+      ProcessRunner.killTree(process, deadline);
+      Thread.currentThread().interrupt();
+      return STATE_ERROR;
+    }
+  }
+
+
+  private void writeStatus(final String newState) throws IOException {
+    this.state = newState;
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append("{\n")
+        .append("  \"state\": ").append(quote(this.state)).append(",\n")
+        .append("  \"owner\": ").append(quote(this.owner)).append(",\n")
+        .append("  \"detach\": ").append(quote(this.detach)).append(",\n")
+        .append("  \"startTime\": ").append(this.startTime).append(",\n")
+        .append("  \"endTime\": ").append(this.endTime).append(",\n")
+        .append("  \"tasks\": [");
+    boolean first = true;
+    for (final Entry entry : this.entries) {
+      buffer.append(first ? "\n" : ",\n");
+      first = false;
+      buffer.append("    {")
+          .append("\"projectId\": ").append(quote(entry.projectId))
+          .append(", \"executionId\": ").append(quote(entry.executionId))
+          .append(", \"phase\": ").append(quote(entry.phase))
+          .append(", \"state\": ").append(quote(entry.state))
+          .append(", \"exitCode\": ").append(entry.exitCode)
+          .append(", \"startTime\": ").append(entry.startTime)
+          .append(", \"time\": ").append(entry.time)
+          .append(", \"log\": ").append(quote(entry.logFile.getAbsolutePath()))
+          .append('}');
+    }
+    buffer.append(first ? "]\n" : "\n  ]\n").append("}\n");
+
+    // status is replaced atomically so that readers never see partially written file
+    final File tempFile = new File(this.statusFile.getParentFile(), this.statusFile.getName() + ".tmp");
+    try (final Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(buffer.toString());
+    }
+    try {
+      Files.move(tempFile.toPath(), this.statusFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      Files.move(tempFile.toPath(), this.statusFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Single task of async finishing plan.
+   */
+  static final class Entry {
+    private final String projectId;
+    private final String executionId;
+    private final String phase;
+    private final File folder;
+    private final List<String> command;
+    private final Map<String, String> environment;
+    private final long timeoutMs;
+    private final File logFile;
+    private String state = STATE_PENDING;
+    private int exitCode = -1;
+    private long startTime;
+    private long time;
+
+    Entry(
+        final String projectId,
+        final String executionId,
+        final String phase,
+        final File folder,
+        final List<String> command,
+        final Map<String, String> environment,
+        final long timeoutMs,
+        final File logFile
+    ) {
+      this.projectId = projectId;
+      this.executionId = executionId;
+      this.phase = phase;
+      this.folder = folder;
+      this.command = Collections.unmodifiableList(new ArrayList<>(command));
+      this.environment = Collections.unmodifiableMap(new LinkedHashMap<>(environment));
+      this.timeoutMs = timeoutMs;
+      this.logFile = logFile;
+    }
+
+    String getProjectId() {
+      return this.projectId;
+    }
+
+    String getExecutionId() {
+      return this.executionId;
+    }
+
+    String getPhase() {
+      return this.phase;
+    }
+
+    long getTimeoutMs() {
+      return this.timeoutMs;
+    }
+
+    File getLogFile() {
+      return this.logFile;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.mvnfinisher;
+
+import java.util.List;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.codehaus.plexus.logging.Logger;
+
+final class DefaultFinishingProbe implements FinishingProbe {
+
+  private final MavenSession session;
+  private final Logger logger;
+  private final MvnFinisherLifecycleParticipant participant;
+  private final FinishingConfig sessionConfig;
+  private FinishingConfig projectConfig;
+  private FinishingTask task;
+  private List<String> goals;
+
+  DefaultFinishingProbe(final MavenSession session, final Logger logger) {
+    this.session = session;
+    this.logger = logger;
+    this.participant = new MvnFinisherLifecycleParticipant(logger);
+    this.sessionConfig = FinishingConfig.ofSession(session);
+  }
+
+  @Override
+  public int makeFinishingPlan() {
+    final FinishingConfig config = FinishingConfig.ofSession(this.session);
+    return this.participant.makeFinishingPlan(this.session, config, FinishingSettings.of(config, this.logger)).getTasks().size();
+  }
+
+  @Override
+  public void selectTask(final int index) {
+    this.task = this.participant.makeFinishingPlan(this.session, this.sessionConfig, FinishingSettings.of(this.sessionConfig, this.logger))
+        .getTasks().get(index);
+    this.goals = this.task.makeGoals();
+  }
+
+  @Override
+  public InvocationRequest makeInvocationRequest(final int timeoutSeconds) {
+    if (this.task == null) {
+      throw new IllegalStateException("Task is not selected");
+    }
+    return this.participant.makeInvocationRequest(this.session, this.task, this.goals, timeoutSeconds, false);
+  }
+
+  @Override
+  public Object resolveSessionConfig() {
+    return FinishingConfig.ofSession(this.session);
+  }
+
+  @Override
+  public Object resolveProjectConfig(final MavenProject project) {
+    this.projectConfig = this.sessionConfig.withProject(project);
+    return this.projectConfig;
+  }
+
+  @Override
+  public String findProjectProperty(final String key, final String defaultValue) {
+    if (this.projectConfig == null) {
+      throw new IllegalStateException("Project configuration is not resolved");
+    }
+    return this.projectConfig.getString(key, defaultValue);
+  }
+}
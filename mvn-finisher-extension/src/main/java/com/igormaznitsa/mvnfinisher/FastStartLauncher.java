@@ -0,0 +1,262 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.maven.shared.utils.cli.CommandLineException;
+import org.apache.maven.shared.utils.cli.Commandline;
+
+/**
+ * Starts maven classworlds launcher directly in JVM tuned for short living processes, without maven start script.
+ * Classes loaded by the first started process are saved into AppCDS archive which is reused by next processes (Java 13+).
+ */
+final class FastStartLauncher {
+
+  static final String DEFAULT_HEAP = "256m";
+
+  private static final String LAUNCHER_CLASS = "org.codehaus.plexus.classworlds.launcher.Launcher";
+  private static final String CACHE_FOLDER = ".cache/mvn-finisher";
+  private static final int MIN_DYNAMIC_ARCHIVE_JAVA = 13;
+  private static final int MIN_NATIVE_ACCESS_JAVA = 22;
+  private static final AtomicBoolean archiving = new AtomicBoolean();
+
+  private FastStartLauncher() {
+  }
+
+  /**
+   * Execute maven call prepared by invoker command line builder.
+   *
+   * @param commandline command line of maven start script, its arguments and environment are used
+   * @param projectDir  folder of the executed project
+   * @param localRepo   local maven repository, AppCDS archive is kept under it, can be null
+   * @param heap        max heap size of started JVM
+   * @param deadline    time in milliseconds when kill of the process must be completed, Long.MAX_VALUE if not limited
+   * @return exit code of the process
+   * @throws IOException if maven can't be started directly, invoker should be used
+   */
+  static int run(
+      final Commandline commandline,
+      final File projectDir,
+      final File localRepo,
+      final String heap,
+      final TaskOutputCollector collector,
+      final long timeoutMs,
+      final long deadline
+  ) throws IOException, CommandLineException, InterruptedException {
+    final String mavenHomePath = System.getProperty("maven.home");
+    if (mavenHomePath == null) {
+      throw new IOException("Maven home is not defined");
+    }
+    final File mavenHome = new File(mavenHomePath);
+    final File classworldsConf = new File(mavenHome, "bin" + File.separatorChar + "m2.conf");
+    if (!classworldsConf.isFile()) {
+      throw new IOException("Can't find classworlds configuration: " + classworldsConf);
+    }
+    final File classworldsJar = findClassworldsJar(mavenHome);
+    final File java = findJava();
+
+    final ProcessBuilder processBuilder = new ProcessBuilder();
+    final Map<String, String> environment = processBuilder.environment();
+    for (final String variable : commandline.getEnvironmentVariables()) {
+      final int index = variable.indexOf('=');
+      if (index > 0) {
+        environment.put(variable.substring(0, index), variable.substring(index + 1));
+      }
+    }
+
+    final File multiModuleProjectDir = findMultiModuleProjectDir(projectDir);
+    final int javaVersion = findJavaVersion();
+
+    // user options are parsed before creation of archive file because their parse can fail
+    final List<String> jvmOptions = new ArrayList<>();
+    final File jvmConfig = new File(multiModuleProjectDir, ".mvn" + File.separatorChar + "jvm.config");
+    if (jvmConfig.isFile()) {
+      final StringBuilder options = new StringBuilder();
+      for (final String line : Files.readAllLines(jvmConfig.toPath(), StandardCharsets.UTF_8)) {
+        if (!line.trim().startsWith("#")) {
+          options.append(line).append(' ');
+        }
+      }
+      jvmOptions.addAll(split(options.toString(), jvmConfig.getPath()));
+    }
+    jvmOptions.addAll(split(environment.get("MAVEN_OPTS"), "MAVEN_OPTS"));
+    final List<String> mavenArgs = split(environment.get("MAVEN_ARGS"), "MAVEN_ARGS");
+
+    final List<String> command = new ArrayList<>();
+    command.add(java.getAbsolutePath());
+    command.add("-XX:TieredStopAtLevel=1");
+    command.add("-XX:+UseSerialGC");
+    command.add("-XX:-UsePerfData");
+    command.add("-Xmx" + heap);
+    command.add("-Xshare:auto");
+    if (javaVersion >= MIN_NATIVE_ACCESS_JAVA) {
+      command.add("--enable-native-access=ALL-UNNAMED");
+    }
+
+    File archive = null;
+    File archiveDump = null;
+    if (localRepo != null && javaVersion >= MIN_DYNAMIC_ARCHIVE_JAVA) {
+      final File cacheFolder = new File(localRepo, CACHE_FOLDER);
+      archive = new File(cacheFolder, "maven-" + makeArchiveId(mavenHome, classworldsJar) + ".jsa");
+      if (archive.isFile()) {
+        command.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+      } else if ((cacheFolder.isDirectory() || cacheFolder.mkdirs()) && archiving.compareAndSet(false, true)) {
+        // archive is written into temp file and renamed after successful exit, so that concurrent builds never see partial archive
+        try {
+          archiveDump = File.createTempFile("maven-", ".jsa.tmp", cacheFolder);
+          command.add("-XX:ArchiveClassesAtExit=" + archiveDump.getAbsolutePath());
+        } catch (IOException ex) {
+          archiving.set(false);
+        }
+      }
+    }
+
+    // user defined options are placed after defaults to override them, like maven start script does
+    command.addAll(jvmOptions);
+
+    command.add("-classpath");
+    command.add(classworldsJar.getAbsolutePath());
+    command.add("-Dclassworlds.conf=" + classworldsConf.getAbsolutePath());
+    command.add("-Dmaven.home=" + mavenHome.getAbsolutePath());
+    command.add("-Dlibrary.jansi.path=" + new File(mavenHome, "lib" + File.separatorChar + "jansi-native").getAbsolutePath());
+    command.add("-Dmaven.multiModuleProjectDirectory=" + multiModuleProjectDir.getAbsolutePath());
+    command.add(LAUNCHER_CLASS);
+    command.addAll(mavenArgs);
+    command.addAll(Arrays.asList(commandline.getArguments()));
+
+    environment.put("MAVEN_PROJECTBASEDIR", multiModuleProjectDir.getAbsolutePath());
+    processBuilder.command(command);
+    processBuilder.directory(commandline.getWorkingDirectory() == null ? projectDir : commandline.getWorkingDirectory());
+
+    if (archiveDump == null) {
+      return ProcessRunner.run(processBuilder, collector, timeoutMs, deadline);
+    }
+
+    boolean saved = false;
+    try {
+      final int exitCode = ProcessRunner.run(processBuilder, collector, timeoutMs, deadline);
+      if (exitCode == 0 && archiveDump.length() > 0L) {
+        try {
+          Files.move(archiveDump.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+          saved = true;
+        } catch (IOException ex) {
+          // archive will be created by next process
+        }
+      }
+      return exitCode;
+    } finally {
+      if (!saved && !archiveDump.delete()) {
+        archiveDump.deleteOnExit();
+      }
+      archiving.set(false);
+    }
+  }
+
+  private static File findClassworldsJar(final File mavenHome) throws IOException {
+    final File[] found = new File(mavenHome, "boot")
+        .listFiles(x -> x.getName().startsWith("plexus-classworlds-") && x.getName().endsWith(".jar"));
+    if (found == null || found.length != 1) {
+      throw new IOException("Can't find single plexus-classworlds jar in " + mavenHome);
+    }
+    return found[0];
+  }
+
+  private static File findJava() throws IOException {
+    final File bin = new File(System.getProperty("java.home"), "bin");
+    for (final String name : new String[] {"java", "java.exe"}) {
+      final File file = new File(bin, name);
+      if (file.isFile()) {
+        return file;
+      }
+    }
+    throw new IOException("Can't find java executable in " + bin);
+  }
+
+  private static int findJavaVersion() {
+    final String version = System.getProperty("java.specification.version", "1.8");
+    try {
+      return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+    } catch (NumberFormatException ex) {
+      return 8;
+    }
+  }
+
+  /**
+   * Find the nearest folder with .mvn subfolder, the same way as maven start script does.
+   */
+  private static File findMultiModuleProjectDir(final File projectDir) {
+    final File start = projectDir.getAbsoluteFile();
+    File folder = start;
+    while (folder != null) {
+      if (new File(folder, ".mvn").isDirectory()) {
+        return folder;
+      }
+      folder = folder.getParentFile();
+    }
+    return start;
+  }
+
+  /**
+   * Archive is valid only for the same JVM and the same class path so that they are part of its name.
+   */
+  private static String makeArchiveId(final File mavenHome, final File classworldsJar) {
+    final String text = System.getProperty("java.home") + '|' + System.getProperty("java.vm.version") + '|'
+        + mavenHome.getAbsolutePath() + '|' + classworldsJar.getName() + '|' + classworldsJar.lastModified();
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+      final StringBuilder result = new StringBuilder();
+      for (int i = 0; i < 8; i++) {
+        result.append(String.format("%02x", digest[i] & 0xFF));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException ex) {
+      return Integer.toHexString(text.hashCode());
+    }
+  }
+
+  /**
+   * Split options by white spaces.
+   *
+   * @param source name of options source to be shown in error message
+   * @throws IOException if options contain quotes, their processing depends on maven start script so that invoker should be used
+   */
+  private static List<String> split(final String text, final String source) throws IOException {
+    final List<String> result = new ArrayList<>();
+    if (text != null) {
+      if (text.indexOf('"') >= 0 || text.indexOf('\'') >= 0) {
+        throw new IOException("Options in " + source + " contain quotes");
+      }
+      for (final String s : text.trim().split("\\s+")) {
+        if (!s.isEmpty()) {
+          result.add(s);
+        }
+      }
+    }
+    return result;
+  }
+}
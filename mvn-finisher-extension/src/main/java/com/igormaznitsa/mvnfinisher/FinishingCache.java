@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Cache of fingerprints of successfully executed finishing tasks. Fingerprints are kept in index file in build folder of every project.
+ */
+final class FinishingCache {
+
+  static final String INDEX_FILE_NAME = "mvn.finisher.cache.properties";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Logger logger;
+  private final Map<File, Properties> indexes = new HashMap<>();
+  private final Set<File> changedIndexes = new HashSet<>();
+
+  FinishingCache(final Logger logger) {
+    this.logger = logger;
+  }
+
+  private static String makeKey(final FinishingTask task) {
+    return task.getPluginKey() + '@' + task.getExecutionId();
+  }
+
+  private static File makeIndexFile(final FinishingTask task) {
+    return new File(task.getBuildDirectory(), INDEX_FILE_NAME);
+  }
+
+  /**
+   * Calculate fingerprint of task from plugin, execution configuration, pom content, build outcome and declared input files.
+   *
+   * @param task         task, must not be null
+   * @param buildOutcome text representation of build outcome of the project
+   * @return fingerprint as hex string
+   * @throws IOException if error during read of pom or input files
+   */
+  static String makeFingerprint(final FinishingTask task, final String buildOutcome) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException("Can't find SHA-256", ex);
+    }
+    update(digest, task.getPluginId());
+    update(digest, task.getExecutionId());
+    update(digest, task.getPhase());
+    update(digest, String.join(",", task.getGoals()));
+    update(digest, task.getConfiguration());
+    update(digest, buildOutcome);
+    if (task.getPomFile() != null) {
+      updateFile(digest, task.getPomFile().toPath());
+    }
+    for (final String input : task.getCacheInputs()) {
+      final Path inputPath = task.getBaseDir().toPath().resolve(input);
+      update(digest, input);
+      if (Files.isDirectory(inputPath)) {
+        final List<Path> files;
+        try (final Stream<Path> stream = Files.walk(inputPath)) {
+          files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (final Path file : files) {
+          update(digest, inputPath.relativize(file).toString());
+          updateFile(digest, file);
+        }
+      } else if (Files.isRegularFile(inputPath)) {
+        updateFile(digest, inputPath);
+      } else {
+        update(digest, "<missing>");
+      }
+    }
+    final byte[] hash = digest.digest();
+    final char[] result = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; i++) {
+      result[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+      result[i * 2 + 1] = HEX[hash[i] & 0xF];
+    }
+    return new String(result);
+  }
+
+  private static void update(final MessageDigest digest, final String text) {
+    digest.update((text == null ? "" : text).getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private static void updateFile(final MessageDigest digest, final Path file) throws IOException {
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    try (final InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    digest.update((byte) 0);
+  }
+
+  private Properties findIndex(final File indexFile) {
+    return this.indexes.computeIfAbsent(indexFile, file -> {
+      final Properties result = new Properties();
+      if (file.isFile()) {
+        try (final InputStream in = Files.newInputStream(file.toPath())) {
+          result.load(in);
+        } catch (IOException ex) {
+          this.logger.warn("Can't read finishing cache index " + file + ": " + ex.getMessage());
+        }
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Check that fingerprint of task is the same as fingerprint of its last successful execution.
+   */
+  synchronized boolean isUnchanged(final FinishingTask task, final String fingerprint) {
+    return fingerprint.equals(findIndex(makeIndexFile(task)).getProperty(makeKey(task)));
+  }
+
+  /**
+   * Remember fingerprint of successfully executed task.
+   */
+  synchronized void put(final FinishingTask task, final String fingerprint) {
+    final File indexFile = makeIndexFile(task);
+    findIndex(indexFile).setProperty(makeKey(task), fingerprint);
+    this.changedIndexes.add(indexFile);
+  }
+
+  /**
+   * Remove fingerprint of task, must be called if task execution failed.
+   */
+  synchronized void remove(final FinishingTask task) {
+    final File indexFile = makeIndexFile(task);
+    if (findIndex(indexFile).remove(makeKey(task)) != null) {
+      this.changedIndexes.add(indexFile);
+    }
+  }
+
+  /**
+   * Save changed index files.
+   */
+  synchronized void save() {
+    for (final File indexFile : this.changedIndexes) {
+      final File folder = indexFile.getParentFile();
+      if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+        this.logger.warn("Can't create folder for finishing cache index: " + folder);
+        continue;
+      }
+      try (final OutputStream out = Files.newOutputStream(indexFile.toPath())) {
+        this.indexes.get(indexFile).store(out, "mvn-finisher cache index");
+      } catch (IOException ex) {
+        this.logger.warn("Can't save finishing cache index " + indexFile + ": " + ex.getMessage());
+      }
+    }
+    this.changedIndexes.clear();
+  }
+}
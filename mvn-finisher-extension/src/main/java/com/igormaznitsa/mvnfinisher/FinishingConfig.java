@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Immutable layered snapshot of extension properties. Layers from the lowest priority: project properties, system properties, user properties, configuration of plugin execution.
+ * Only properties with the extension prefix are kept.
+ */
+final class FinishingConfig {
+
+  static final String PREFIX = "mvn.finisher.";
+
+  static final String PROPERTY_SKIP = "mvn.finisher.skip";
+  static final String PROPERTY_SAVE_LOG = "mvn.finisher.log.save";
+  static final String PROPERTY_SAVE_LOG_FOLDER = "mvn.finisher.log.folder";
+  static final String PROPERTY_SAVE_LOG_GZIP = "mvn.finisher.log.gzip";
+  static final String PROPERTY_LOG_TAIL = "mvn.finisher.log.tail";
+  static final String PROPERTY_TASK_TIMEOUT = "mvn.finisher.task.timeout";
+  static final String PROPERTY_MODE = "mvn.finisher.mode";
+  static final String PROPERTY_WORKERS = "mvn.finisher.workers";
+  static final String PROPERTY_BATCH = "mvn.finisher.batch";
+  static final String PROPERTY_THREADS = "mvn.finisher.threads";
+  static final String PROPERTY_FORCE_BUDGET = "mvn.finisher.force.budget";
+  static final String PROPERTY_FORCE_THREADS = "mvn.finisher.force.threads";
+  static final String PROPERTY_REPORT = "mvn.finisher.report";
+  static final String PROPERTY_REPORT_FILE = "mvn.finisher.report.file";
+  static final String PROPERTY_CACHE = "mvn.finisher.cache";
+  static final String PROPERTY_CACHE_INPUTS = "mvn.finisher.cache.inputs";
+  static final String PROPERTY_PRERESOLVE = "mvn.finisher.preresolve";
+  static final String PROPERTY_OFFLINE = "mvn.finisher.offline";
+  static final String PROPERTY_LIVE = "mvn.finisher.live";
+  static final String PROPERTY_LIVE_RATE = "mvn.finisher.live.rate";
+  static final String PROPERTY_COALESCE = "mvn.finisher.coalesce";
+  static final String PROPERTY_LAUNCHER = "mvn.finisher.launcher";
+  static final String PROPERTY_LAUNCHER_HEAP = "mvn.finisher.launcher.heap";
+  static final String PROPERTY_JOURNAL = "mvn.finisher.journal";
+  static final String PROPERTY_LOCK_WAIT = "mvn.finisher.lock.wait";
+
+  private final Map<String, String> values;
+
+  private FinishingConfig(final Map<String, String> values) {
+    this.values = values;
+  }
+
+  /**
+   * Make configuration from system and user properties of session.
+   */
+  static FinishingConfig ofSession(final MavenSession session) {
+    final Map<String, String> values = new HashMap<>();
+    if (session != null) {
+      copyProperties(session.getSystemProperties(), values);
+      copyProperties(session.getUserProperties(), values);
+    }
+    return new FinishingConfig(Collections.unmodifiableMap(values));
+  }
+
+  private static void copyProperties(final Properties properties, final Map<String, String> values) {
+    if (properties != null) {
+      for (final Map.Entry<Object, Object> e : properties.entrySet()) {
+        if (e.getKey() instanceof String && e.getValue() instanceof String && ((String) e.getKey()).startsWith(PREFIX)) {
+          values.put((String) e.getKey(), (String) e.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Make configuration where project properties are placed under the current values.
+   */
+  FinishingConfig withProject(final MavenProject project) {
+    final Map<String, String> values = new HashMap<>();
+    copyProperties(project.getProperties(), values);
+    if (values.isEmpty()) {
+      return this;
+    }
+    values.putAll(this.values);
+    return new FinishingConfig(Collections.unmodifiableMap(values));
+  }
+
+  /**
+   * Make configuration where values from configuration of plugin execution are placed over the current values, elements are named like properties.
+   */
+  FinishingConfig withExecution(final PluginExecution execution) {
+    final Object configuration = execution.getConfiguration();
+    if (!(configuration instanceof Xpp3Dom)) {
+      return this;
+    }
+    Map<String, String> values = null;
+    for (final Xpp3Dom child : ((Xpp3Dom) configuration).getChildren()) {
+      if (child.getName().startsWith(PREFIX) && child.getValue() != null) {
+        if (values == null) {
+          values = new HashMap<>(this.values);
+        }
+        values.put(child.getName(), child.getValue().trim());
+      }
+    }
+    return values == null ? this : new FinishingConfig(Collections.unmodifiableMap(values));
+  }
+
+  String getString(final String key, final String defaultValue) {
+    final String result = this.values.get(key);
+    return result == null ? defaultValue : result;
+  }
+
+  boolean getBoolean(final String key, final boolean defaultValue) {
+    final String result = this.values.get(key);
+    return result == null ? defaultValue : Boolean.parseBoolean(result);
+  }
+
+  /**
+   * Get positive integer value, error is logged for illegal value and default value is returned.
+   */
+  int getPositiveInt(final String key, final int defaultValue, final Logger logger, final String defaultDescription) {
+    final String value = this.values.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      final int result = Integer.parseInt(value.trim());
+      if (result <= 0) {
+        throw new NumberFormatException("Illegal value");
+      }
+      return result;
+    } catch (NumberFormatException ex) {
+      logger.error(String.format("Detected illegal value '%s' for '%s', %s in use", value, key, defaultDescription));
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * On-disk journal of force finishing tasks of running session. The journal is written into build folder of the session, every completed
+ * task is appended as single line and the journal is deleted after session finishing. The journal keeps neither environment nor
+ * secret properties of the build. The journal is locked by OS file lock during session
+ * so that journal without lock means that its build was killed without finishing, pending tasks of such journal can be recovered
+ * by next build or through {@link #main(String...)}.
+ */
+final class FinishingJournal implements AutoCloseable {
+
+  static final String FILE_NAME = ".finishingJournal";
+
+  private static final String PROPERTY_OWNER = "owner";
+  private static final String PROPERTY_TIME = "time";
+  private static final String PREFIX_DONE = "done.";
+
+  private final File file;
+  private final byte[] content;
+  private final StringBuilder doneLines = new StringBuilder();
+  private final Map<String, Integer> indexes;
+  private FileChannel channel;
+  private FileLock lock;
+
+  private FinishingJournal(final File file, final byte[] content, final FileChannel channel, final FileLock lock, final Map<String, Integer> indexes) {
+    this.file = file;
+    this.content = content;
+    this.channel = channel;
+    this.lock = lock;
+    this.indexes = indexes;
+  }
+
+  /**
+   * Write new journal and keep it locked.
+   *
+   * @param file    journal file
+   * @param entries force finishing tasks mapped by their journal keys, in order of their execution
+   * @return journal or null if the file is locked by another live build
+   * @throws IOException if any IO error
+   */
+  static FinishingJournal create(final File file, final Map<String, AsyncFinisher.Entry> entries) throws IOException {
+    final Map<String, Integer> indexes = new HashMap<>();
+    for (final String key : entries.keySet()) {
+      indexes.put(key, indexes.size());
+    }
+    final Properties properties = new Properties();
+    properties.setProperty(PROPERTY_OWNER, ManagementFactory.getRuntimeMXBean().getName());
+    properties.setProperty(PROPERTY_TIME, Instant.now().toString());
+    AsyncFinisher.storeEntries(properties, new ArrayList<>(entries.values()));
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    properties.store(buffer, "mvn-finisher journal");
+    final byte[] content = buffer.toByteArray();
+
+    final File folder = file.getAbsoluteFile().getParentFile();
+    if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Can't create folder " + folder);
+    }
+    while (true) {
+      final FileChannel channel = FileChannel.open(file.toPath(),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      try {
+        final FileLock lock = tryLock(channel);
+        if (lock == null) {
+          channel.close();
+          return null;
+        }
+        if (!file.isFile()) {
+          // the file has been deleted by previous owner between its open and lock
+          lock.release();
+          channel.close();
+          continue;
+        }
+        restrictAccess(file);
+        channel.truncate(0L);
+        channel.write(ByteBuffer.wrap(content), 0L);
+        channel.force(false);
+        return new FinishingJournal(file, content, channel, lock, indexes);
+      } catch (IOException | RuntimeException ex) {
+        channel.close();
+        throw ex;
+      }
+    }
+  }
+
+  private static void restrictAccess(final File file) {
+    try {
+      Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-------"));
+    } catch (IOException | UnsupportedOperationException ex) {
+      // file system without POSIX permissions
+    }
+  }
+
+  /**
+   * Write the journal again if it has been deleted during build, for instance by clean of the build folder.
+   *
+   * @throws IOException if the journal can't be written
+   */
+  synchronized void restoreIfDeleted() throws IOException {
+    if (!this.channel.isOpen() || this.file.isFile()) {
+      return;
+    }
+    try {
+      this.lock.release();
+    } finally {
+      this.channel.close();
+    }
+    final File folder = this.file.getAbsoluteFile().getParentFile();
+    if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Can't create folder " + folder);
+    }
+    final FileChannel newChannel = FileChannel.open(this.file.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      final FileLock newLock = tryLock(newChannel);
+      if (newLock == null) {
+        throw new IOException("Restored journal is locked by another owner: " + this.file);
+      }
+      restrictAccess(this.file);
+      newChannel.truncate(0L);
+      newChannel.write(ByteBuffer.wrap(this.content), 0L);
+      newChannel.write(ByteBuffer.wrap(this.doneLines.toString().getBytes(StandardCharsets.ISO_8859_1)), this.content.length);
+      newChannel.force(false);
+      this.channel = newChannel;
+      this.lock = newLock;
+    } catch (IOException | RuntimeException ex) {
+      newChannel.close();
+      throw ex;
+    }
+  }
+
+  private static FileLock tryLock(final FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException ex) {
+      // locked by the same JVM
+      return null;
+    }
+  }
+
+  /**
+   * Mark task as completed, unknown keys are ignored.
+   */
+  synchronized void markDone(final String key, final String state) {
+    final Integer index = this.indexes.get(key);
+    if (index != null && this.channel.isOpen()) {
+      this.doneLines.append(makeDoneLine(index, state));
+      appendDone(this.channel, index, state);
+    }
+  }
+
+  private static String makeDoneLine(final int index, final String state) {
+    return PREFIX_DONE + index + '=' + state + '\n';
+  }
+
+  private static void appendDone(final FileChannel channel, final int index, final String state) {
+    try {
+      final byte[] line = makeDoneLine(index, state).getBytes(StandardCharsets.ISO_8859_1);
+      channel.write(ByteBuffer.wrap(line), channel.size());
+    } catch (IOException ex) {
+      // journal is only hint for recovery so that its error must not break finishing
+    }
+  }
+
+  /**
+   * Delete journal and release its lock.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!this.channel.isOpen()) {
+      return;
+    }
+    try {
+      // the file is deleted under lock so that it will not be deleted after its lock by another process
+      if (!this.file.delete()) {
+        this.channel.truncate(0L);
+      }
+    } finally {
+      try {
+        this.lock.release();
+      } finally {
+        this.channel.close();
+      }
+    }
+  }
+
+  /**
+   * Execute pending tasks of journal left by killed build and delete the journal.
+   *
+   * @param file     journal file
+   * @param threads  number of threads to execute tasks
+   * @param deadline time in milliseconds when all tasks must be completed
+   * @param info     consumer of information messages
+   * @param error    consumer of error messages
+   * @return number of executed tasks, 0 if there is no journal or it is locked by live build
+   * @throws IOException          if journal can't be read
+   * @throws InterruptedException if thread has been interrupted
+   */
+  static int recover(
+      final File file,
+      final int threads,
+      final long deadline,
+      final Consumer<String> info,
+      final Consumer<String> error
+  ) throws IOException, InterruptedException {
+    if (!file.isFile()) {
+      return 0;
+    }
+    final FileChannel channel;
+    try {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (NoSuchFileException ex) {
+      return 0;
+    }
+    try {
+      final FileLock lock = tryLock(channel);
+      if (lock == null) {
+        info.accept("Finishing journal " + file + " is locked by live build");
+        return 0;
+      }
+      try {
+        if (!file.isFile()) {
+          return 0;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+          // read whole file
+        }
+        final Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(buffer.array(), 0, buffer.position()));
+
+        final List<AsyncFinisher.Entry> entries = AsyncFinisher.loadEntries(properties);
+        final List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+          if (properties.getProperty(PREFIX_DONE + i) == null) {
+            pending.add(i);
+          }
+        }
+
+        if (!pending.isEmpty()) {
+          info.accept(String.format("Detected unfinished journal of build %s started at %s, executing %d pending force finishing task(s)",
+              properties.getProperty(PROPERTY_OWNER), properties.getProperty(PROPERTY_TIME), pending.size()));
+          FinishingScheduler.execute(threads, pending,
+              // general finishing tasks are started after force tasks, like during force finishing
+              (unit, other) -> MvnFinisherLifecycleParticipant.FINISHING_PHASE.equals(entries.get(unit).getPhase())
+                  && !MvnFinisherLifecycleParticipant.FINISHING_PHASE.equals(entries.get(other).getPhase()),
+              index -> {
+                final AsyncFinisher.Entry entry = entries.get(index);
+                final long timeoutMs = Math.min(entry.getTimeoutMs(), deadline - System.currentTimeMillis());
+                String state;
+                if (timeoutMs <= 0L) {
+                  state = AsyncFinisher.STATE_TIMEOUT;
+                } else {
+                  try {
+                    state = AsyncFinisher.execute(entry, timeoutMs, deadline);
+                  } catch (IOException ex) {
+                    error.accept("Can't start recovered finishing task " + entry.getExecutionId() + ": " + ex.getMessage());
+                    state = AsyncFinisher.STATE_ERROR;
+                  }
+                }
+                synchronized (channel) {
+                  appendDone(channel, index, state);
+                }
+                final String message = String.format("Recovered finishing task %s (%s): %s, log %s",
+                    entry.getExecutionId(), entry.getProjectId(), state, entry.getLogFile());
+                if (AsyncFinisher.STATE_OK.equals(state)) {
+                  info.accept(message);
+                } else {
+                  error.accept(message);
+                }
+                return state;
+              });
+        }
+        if (!file.delete()) {
+          channel.truncate(0L);
+        }
+        return pending.size();
+      } finally {
+        lock.release();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Recover journal outside of maven build.
+   * Arguments: journal file or folder containing it, optional number of threads, optional time budget in seconds.
+   */
+  public static void main(final String... args) throws Exception {
+    if (args.length < 1 || args.length > 3) {
+      System.err.println("Expected arguments: <journal file or build folder> [threads] [budget seconds]");
+      System.exit(2);
+    }
+    File file = new File(args[0]);
+    if (file.isDirectory()) {
+      file = new File(file, FILE_NAME);
+    }
+    final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    final int budget = args.length > 2 ? Integer.parseInt(args[2]) : FinishingSettings.DEFAULT_FORCE_BUDGET_SECONDS;
+    final AtomicInteger errors = new AtomicInteger();
+    final int executed = recover(file, threads, System.currentTimeMillis() + budget * 1000L, System.out::println, x -> {
+      errors.incrementAndGet();
+      System.err.println(x);
+    });
+    System.out.println(String.format("Executed %d recovered finishing task(s)", executed));
+    System.exit(errors.get() == 0 ? 0 : 1);
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+/**
+ * Listener of finishing metrics. Implementations are found through {@link java.util.ServiceLoader} in class loader of the extension, so that they can be provided by extension dependencies.
+ */
+public interface FinishingListener {
+
+  /**
+   * Called after completion of every finishing task, can be called from different threads.
+   *
+   * @param metrics metrics of completed task, must not be null
+   */
+  default void onTaskFinished(final FinishingTaskMetrics metrics) {
+  }
+
+  /**
+   * Called after completion of all finishing tasks of session.
+   *
+   * @param metrics metrics of finishing session, must not be null
+   */
+  default void onSessionFinished(final FinishingSessionMetrics metrics) {
+  }
+}
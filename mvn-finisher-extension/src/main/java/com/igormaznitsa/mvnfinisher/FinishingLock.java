@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Cross-process lock of session folder finishing. It is based on OS file lock so that lock is automatically released if owner process is dead, owner info is written into the lock file to be shown in log.
+ * OS file lock can't be shared by sessions of the same JVM (for instance maven daemon) so that such sessions are queued by in-JVM owner of the file.
+ * Wait for the lock is limited, finishing is never skipped because of held lock.
+ */
+final class FinishingLock implements AutoCloseable {
+
+  private static final int MAX_OWNER_INFO_LENGTH = 1024;
+  private static final long LOCK_POLL_INTERVAL_MS = 250L;
+  private static final Map<String, Semaphore> JVM_OWNERS = new ConcurrentHashMap<>();
+
+  private final File file;
+  private final FileChannel channel;
+  private final FileLock lock;
+  private final Semaphore jvmOwner;
+
+  private FinishingLock(final File file, final FileChannel channel, final FileLock lock, final Semaphore jvmOwner) {
+    this.file = file;
+    this.channel = channel;
+    this.lock = lock;
+    this.jvmOwner = jvmOwner;
+  }
+
+  /**
+   * Lock file. If the file is locked by another session of the same JVM or by another process then the call waits for its release.
+   *
+   * @param file   lock file, must not be null
+   * @param waitMs max time to wait for release of the file by another session, after that finishing is allowed without lock
+   * @param logger logger, must not be null
+   * @return lock object, it doesn't hold the file if the wait time is over
+   * @throws IOException          if any IO error
+   * @throws InterruptedException if thread interrupted during wait
+   */
+  static FinishingLock tryLock(final File file, final long waitMs, final Logger logger) throws IOException, InterruptedException {
+    final long now = System.currentTimeMillis();
+    final long deadline = waitMs >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + Math.max(0L, waitMs);
+
+    final Semaphore jvmOwner = JVM_OWNERS.computeIfAbsent(file.getAbsoluteFile().toPath().normalize().toString(), k -> new Semaphore(1, true));
+    if (!jvmOwner.tryAcquire()) {
+      logger.warn(format(file, "is held by another session of the current JVM, waiting for its release", ""));
+      if (!jvmOwner.tryAcquire(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+        logger.warn(format(file, "is not released by another session of the current JVM in time, finishing without lock", ""));
+        return new FinishingLock(file, null, null, null);
+      }
+    }
+    try {
+      boolean waiting = false;
+      while (true) {
+        final FinishingLock result = tryLockOnce(file, jvmOwner, waiting ? null : logger);
+        if (result == null) {
+          final long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0L) {
+            logger.warn(format(file, "is not released by another process in time, finishing without lock", ""));
+            return new FinishingLock(file, null, null, jvmOwner);
+          }
+          waiting = true;
+          Thread.sleep(Math.min(LOCK_POLL_INTERVAL_MS, remaining));
+        } else if (result.channel == null || file.isFile()) {
+          return result;
+        } else {
+          // the file has been deleted by previous owner between its open and lock, so that lock must be made again
+          result.release();
+        }
+      }
+    } catch (IOException | RuntimeException | InterruptedException ex) {
+      jvmOwner.release();
+      throw ex;
+    }
+  }
+
+  private void release() throws IOException {
+    if (this.channel == null) {
+      return;
+    }
+    try {
+      this.lock.release();
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  /**
+   * Make single attempt to lock the file.
+   *
+   * @param logger logger to report owner of the locked file, null if it has been already reported
+   * @return lock object or null if the file is locked by another live process
+   */
+  private static FinishingLock tryLockOnce(final File file, final Semaphore jvmOwner, final Logger logger) throws IOException {
+    final FileChannel channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      final FileLock lock;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException ex) {
+        // locked in the same JVM but not through the owner map, for instance by the extension loaded in another class realm
+        if (logger != null) {
+          logger.warn(format(file, "is locked by another session of the current JVM, finishing without lock", readOwnerInfo(channel)));
+        }
+        channel.close();
+        return new FinishingLock(file, null, null, jvmOwner);
+      }
+
+      final String ownerInfo = readOwnerInfo(channel);
+      if (lock == null) {
+        if (logger != null) {
+          logger.warn(format(file, "is held by another process, waiting for its release", ownerInfo));
+        }
+        channel.close();
+        return null;
+      }
+
+      if (logger != null && !ownerInfo.isEmpty()) {
+        logger.warn(format(file, "is stale, its owner is not alive", ownerInfo));
+      }
+
+      channel.truncate(0L);
+      channel.write(ByteBuffer.wrap(makeOwnerInfo().getBytes(StandardCharsets.UTF_8)), 0L);
+      channel.force(false);
+      return new FinishingLock(file, channel, lock, jvmOwner);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private static String format(final File file, final String state, final String ownerInfo) {
+    return String.format("Finishing lock %s %s%s", file, state, ownerInfo.isEmpty() ? "" : ": " + ownerInfo.replace('\n', ' ').trim());
+  }
+
+  private static String readOwnerInfo(final FileChannel channel) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(MAX_OWNER_INFO_LENGTH);
+    long position = 0L;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+    }
+    buffer.flip();
+    return StandardCharsets.UTF_8.decode(buffer).toString().trim();
+  }
+
+  private static String makeOwnerInfo() {
+    // name of runtime bean has format pid@host for all known JVMs
+    final String name = ManagementFactory.getRuntimeMXBean().getName();
+    final int index = name.indexOf('@');
+    return "pid=" + (index < 0 ? name : name.substring(0, index)) + '\n'
+        + "host=" + (index < 0 ? "" : name.substring(index + 1)) + '\n'
+        + "time=" + Instant.now() + '\n';
+  }
+
+  /**
+   * Delete lock file and release lock.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      // the file is deleted under lock so that it will not be deleted after its lock by another process
+      if (this.channel != null && !this.file.delete()) {
+        this.channel.truncate(0L);
+      }
+    } finally {
+      try {
+        this.release();
+      } finally {
+        if (this.jvmOwner != null) {
+          this.jvmOwner.release();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable precomputed finishing plan of session, contains session settings, found finishing tasks and dependencies between session projects.
+ */
+final class FinishingPlan {
+  private final List<FinishingTask> tasks;
+  private final String[] projectIds;
+  private final BitSet[] downstreamProjects;
+  private final FinishingSettings settings;
+
+  FinishingPlan(
+      final FinishingSettings settings,
+      final List<FinishingTask> tasks,
+      final String[] projectIds,
+      final BitSet[] downstreamProjects
+  ) {
+    this.settings = settings;
+    this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
+    this.projectIds = projectIds.clone();
+    this.downstreamProjects = downstreamProjects.clone();
+  }
+
+  FinishingSettings getSettings() {
+    return this.settings;
+  }
+
+  List<FinishingTask> getTasks() {
+    return this.tasks;
+  }
+
+  boolean isEmpty() {
+    return this.tasks.isEmpty();
+  }
+
+  int getProjectCount() {
+    return this.projectIds.length;
+  }
+
+  String getProjectId(final int projectIndex) {
+    return this.projectIds[projectIndex];
+  }
+
+  /**
+   * Check that one project depends directly or transitively on another one.
+   */
+  boolean isDownstream(final int projectIndex, final int dependentProjectIndex) {
+    final BitSet downstream = this.downstreamProjects[projectIndex];
+    return downstream != null && downstream.get(dependentProjectIndex);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Entry point to internal steps of finishing for tools like benchmarks, nothing is executed and no process is started through it.
+ */
+public interface FinishingProbe {
+
+  String PROPERTY_SAVE_LOG_GZIP = FinishingConfig.PROPERTY_SAVE_LOG_GZIP;
+  String PROPERTY_TASK_TIMEOUT = FinishingConfig.PROPERTY_TASK_TIMEOUT;
+
+  /**
+   * Make probe for session.
+   *
+   * @param session session with projects, must not be null
+   * @param logger  logger of finishing, must not be null
+   * @return probe, must not be null
+   */
+  static FinishingProbe of(final MavenSession session, final Logger logger) {
+    return new DefaultFinishingProbe(session, logger);
+  }
+
+  /**
+   * Capture output lines of finishing task.
+   *
+   * @param lines   output lines
+   * @param logFile log file, null if output is not saved
+   * @param gzip    flag to save log compressed
+   * @return number of captured bytes
+   * @throws IOException if log can't be written
+   */
+  static long captureOutput(final String[] lines, final File logFile, final boolean gzip) throws IOException {
+    try (final TaskOutputCollector collector = new TaskOutputCollector(FinishingTaskSettings.DEFAULT_LOG_TAIL_LINES, x -> x.startsWith("[INFO] ---"))) {
+      if (logFile != null) {
+        collector.openLog(logFile, gzip);
+      }
+      for (final String line : lines) {
+        collector.onOutput(line);
+      }
+      return collector.getBytes();
+    }
+  }
+
+  /**
+   * Discover finishing tasks of the session.
+   *
+   * @return number of found tasks
+   */
+  int makeFinishingPlan();
+
+  /**
+   * Select task of the session plan for {@link #makeInvocationRequest(int)}.
+   *
+   * @param index index of task in the plan
+   */
+  void selectTask(int index);
+
+  /**
+   * Prepare external maven call for selected task, process is not started.
+   *
+   * @param timeoutSeconds timeout of the call
+   * @return prepared request, must not be null
+   */
+  InvocationRequest makeInvocationRequest(int timeoutSeconds);
+
+  /**
+   * Resolve extension configuration from system and user properties of the session.
+   *
+   * @return resolved configuration as opaque object
+   */
+  Object resolveSessionConfig();
+
+  /**
+   * Resolve extension configuration of project over the session configuration and keep it for {@link #findProjectProperty(String, String)}.
+   *
+   * @param project project of the session, must not be null
+   * @return resolved configuration as opaque object
+   */
+  Object resolveProjectConfig(MavenProject project);
+
+  /**
+   * Find property in the last resolved project configuration.
+   *
+   * @param key          property name
+   * @param defaultValue value returned if the property is not defined
+   * @return found value or default one
+   */
+  String findProjectProperty(String key, String defaultValue);
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes finishing metrics as JSON document.
+ */
+final class FinishingReportWriter {
+
+  private FinishingReportWriter() {
+  }
+
+  static void write(final File file, final FinishingSessionMetrics metrics) throws IOException {
+    final File folder = file.getParentFile();
+    if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Can't create folder: " + folder);
+    }
+    try (final Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(toJson(metrics));
+    }
+  }
+
+  static String toJson(final FinishingSessionMetrics metrics) {
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append("{\n")
+        .append("  \"force\": ").append(metrics.isForce()).append(",\n")
+        .append("  \"startTime\": ").append(metrics.getStartTime()).append(",\n")
+        .append("  \"time\": ").append(metrics.getTime()).append(",\n")
+        .append("  \"startupOverhead\": ").append(metrics.getStartupOverhead()).append(",\n")
+        .append("  \"tasksTime\": ").append(metrics.getTasksTime()).append(",\n")
+        .append("  \"heapPoolPeaksSum\": ").append(metrics.getHeapPoolPeaksSum()).append(",\n")
+        .append("  \"taskCount\": ").append(metrics.getTasks().size()).append(",\n")
+        .append("  \"errorCount\": ").append(metrics.getErrorCount()).append(",\n")
+        .append("  \"timedOutCount\": ").append(metrics.getTimedOutCount()).append(",\n")
+        .append("  \"skippedCount\": ").append(metrics.getSkippedTasks().size()).append(",\n")
+        .append("  \"skippedTasks\": [");
+    boolean first = true;
+    for (final FinishingTaskMetrics task : metrics.getSkippedTasks()) {
+      buffer.append(first ? "\n" : ",\n");
+      first = false;
+      buffer.append("    {")
+          .append("\"projectId\": ").append(quote(task.getProjectId()))
+          .append(", \"executionId\": ").append(quote(task.getExecutionId()))
+          .append(", \"phase\": ").append(quote(task.getPhase()))
+          .append('}');
+    }
+    buffer.append(first ? "],\n" : "\n  ],\n").append("  \"tasks\": [");
+    first = true;
+    for (final FinishingTaskMetrics task : metrics.getTasks()) {
+      buffer.append(first ? "\n" : ",\n");
+      first = false;
+      buffer.append("    {")
+          .append("\"projectId\": ").append(quote(task.getProjectId()))
+          .append(", \"executionId\": ").append(quote(task.getExecutionId()))
+          .append(", \"phase\": ").append(quote(task.getPhase()))
+          .append(", \"queueWait\": ").append(task.getQueueWait())
+          .append(", \"launchTime\": ").append(task.getLaunchTime())
+          .append(", \"time\": ").append(task.getTime())
+          .append(", \"exitCode\": ").append(task.getExitCode())
+          .append(", \"outputLines\": ").append(task.getOutputLines())
+          .append(", \"outputBytes\": ").append(task.getOutputBytes())
+          .append(", \"timedOut\": ").append(task.isTimedOut())
+          .append(", \"batched\": ").append(task.isBatched())
+          .append(", \"batchSize\": ").append(task.getBatchSize())
+          .append(", \"error\": ").append(quote(task.getError()))
+          .append('}');
+    }
+    buffer.append(first ? "]\n" : "\n  ]\n").append("}\n");
+    return buffer.toString();
+  }
+
+  static String quote(final String text) {
+    if (text == null) {
+      return "null";
+    }
+    final StringBuilder result = new StringBuilder(text.length() + 2).append('"');
+    for (final char c : text.toCharArray()) {
+      switch (c) {
+        case '"':
+          result.append("\\\"");
+          break;
+        case '\\':
+          result.append("\\\\");
+          break;
+        case '\n':
+          result.append("\\n");
+          break;
+        case '\r':
+          result.append("\\r");
+          break;
+        case '\t':
+          result.append("\\t");
+          break;
+        default: {
+          if (c < 0x20) {
+            result.append(String.format("\\u%04x", (int) c));
+          } else {
+            result.append(c);
+          }
+        }
+        break;
+      }
+    }
+    return result.append('"').toString();
+  }
+}
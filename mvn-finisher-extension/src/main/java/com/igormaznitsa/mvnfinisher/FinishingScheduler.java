@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Executes finishing units on bounded thread pool, a unit is started only after completion of all units it depends on.
+ * Units of single thread execution are executed in the calling thread so that they keep its thread bound context (like maven session scope).
+ */
+final class FinishingScheduler {
+
+  private static final String THREAD_NAME_PREFIX = "mvn-finisher-worker-";
+
+  private FinishingScheduler() {
+  }
+
+  /**
+   * Execute units, predicate waitsFor returns true if its first argument must be started only after the second one.
+   */
+  static <U, R> Map<U, R> execute(
+      final int threads,
+      final List<U> units,
+      final BiPredicate<U, U> waitsFor,
+      final Function<U, R> action
+  ) throws InterruptedException {
+    final AtomicInteger threadCounter = new AtomicInteger();
+    final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+      final Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+    try {
+      // prerequisites are scheduled before their dependents so that the calling thread executes units in dependency order
+      final Executor runner = executor == null ? Runnable::run : executor;
+      final Map<U, CompletableFuture<R>> futures = new LinkedHashMap<>();
+      for (final U unit : units) {
+        schedule(unit, units, waitsFor, action, runner, futures, new ArrayList<>());
+      }
+      final Map<U, R> result = new LinkedHashMap<>();
+      for (final U unit : units) {
+        try {
+          result.put(unit, futures.get(unit).get());
+        } catch (ExecutionException ex) {
+          throw new IllegalStateException("Unexpected error during unit execution: " + unit, ex.getCause());
+        }
+      }
+      return result;
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private static <U, R> CompletableFuture<R> schedule(
+      final U unit,
+      final List<U> units,
+      final BiPredicate<U, U> waitsFor,
+      final Function<U, R> action,
+      final Executor executor,
+      final Map<U, CompletableFuture<R>> futures,
+      final List<U> path
+  ) {
+    CompletableFuture<R> future = futures.get(unit);
+    if (future == null) {
+      if (path.contains(unit)) {
+        throw new IllegalStateException("Detected cyclic dependency between finishing units: " + path);
+      }
+      path.add(unit);
+      final List<CompletableFuture<R>> prerequisites = new ArrayList<>();
+      for (final U other : units) {
+        if (other != unit && waitsFor.test(unit, other)) {
+          prerequisites.add(schedule(other, units, waitsFor, action, executor, futures, path));
+        }
+      }
+      path.remove(path.size() - 1);
+      future = CompletableFuture
+          .allOf(prerequisites.toArray(new CompletableFuture<?>[0]))
+          .thenApplyAsync(x -> action.apply(unit), executor);
+      futures.put(unit, future);
+    }
+    return future;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary metrics of finishing session, all times are in milliseconds.
+ */
+public final class FinishingSessionMetrics {
+  private final boolean force;
+  private final long startTime;
+  private final long time;
+  private final long startupOverhead;
+  private final List<FinishingTaskMetrics> tasks;
+  private final List<FinishingTaskMetrics> skippedTasks;
+  private final long heapPoolPeaksSum;
+
+  FinishingSessionMetrics(
+      final boolean force,
+      final long startTime,
+      final long time,
+      final long startupOverhead,
+      final List<FinishingTaskMetrics> tasks,
+      final List<FinishingTaskMetrics> skippedTasks
+  ) {
+    this.force = force;
+    this.startTime = startTime;
+    this.time = time;
+    this.startupOverhead = startupOverhead;
+    this.tasks = Collections.unmodifiableList(tasks);
+    this.skippedTasks = Collections.unmodifiableList(skippedTasks);
+    this.heapPoolPeaksSum = findHeapPoolPeaksSum();
+  }
+
+  /**
+   * Peaks of pools are reached at different moments so that the sum is upper bound of real peak heap usage.
+   */
+  private static long findHeapPoolPeaksSum() {
+    long result = 0L;
+    for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      final MemoryUsage peak = pool.getType() == MemoryType.HEAP ? pool.getPeakUsage() : null;
+      if (peak != null) {
+        result += peak.getUsed();
+      }
+    }
+    return result;
+  }
+
+  public boolean isForce() {
+    return this.force;
+  }
+
+  /**
+   * Start time of finishing as epoch milliseconds.
+   */
+  public long getStartTime() {
+    return this.startTime;
+  }
+
+  /**
+   * Wall time of whole finishing.
+   */
+  public long getTime() {
+    return this.time;
+  }
+
+  /**
+   * Time spent by the extension at the session start, after reading of projects.
+   */
+  public long getStartupOverhead() {
+    return this.startupOverhead;
+  }
+
+  /**
+   * Executed tasks.
+   */
+  public List<FinishingTaskMetrics> getTasks() {
+    return this.tasks;
+  }
+
+  /**
+   * Tasks which were not executed because they are unchanged since their last successful execution.
+   */
+  public List<FinishingTaskMetrics> getSkippedTasks() {
+    return this.skippedTasks;
+  }
+
+  /**
+   * Sum of peak usages of heap memory pools of the maven JVM at the end of finishing, in bytes. Pools reach their peaks at different
+   * moments so that it is upper bound of peak heap usage, not the peak itself.
+   */
+  public long getHeapPoolPeaksSum() {
+    return this.heapPoolPeaksSum;
+  }
+
+  public int getErrorCount() {
+    return (int) this.tasks.stream().filter(FinishingTaskMetrics::isError).count();
+  }
+
+  public int getTimedOutCount() {
+    return (int) this.tasks.stream().filter(FinishingTaskMetrics::isTimedOut).count();
+  }
+
+  /**
+   * Sum of execution times of all tasks.
+   */
+  public long getTasksTime() {
+    return this.tasks.stream().mapToLong(FinishingTaskMetrics::getTime).sum();
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_BATCH;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_FORCE_BUDGET;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_FORCE_THREADS;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_JOURNAL;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_LAUNCHER;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_LAUNCHER_HEAP;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_LIVE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_LIVE_RATE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_LOCK_WAIT;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_MODE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_OFFLINE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_PRERESOLVE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_REPORT;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_REPORT_FILE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_SKIP;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_THREADS;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_WORKERS;
+
+
+import java.util.Locale;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Immutable session level settings of the extension, resolved once per session.
+ */
+final class FinishingSettings {
+
+  static final String MODE_FORK = "fork";
+  static final String MODE_INPROCESS = "inprocess";
+  static final String MODE_WORKER = "worker";
+  static final String LAUNCHER_INVOKER = "invoker";
+  static final String LAUNCHER_FAST = "fast";
+  static final int DEFAULT_FORCE_BUDGET_SECONDS = 120;
+  static final int DEFAULT_LIVE_RATE = 100;
+  static final int DEFAULT_LOCK_WAIT_SECONDS = 300;
+
+  private final boolean skip;
+  private final String mode;
+  private final int workers;
+  private final boolean batch;
+  private final int threads;
+  private final int forceBudgetSeconds;
+  private final int forceThreads;
+  private final boolean report;
+  private final String reportFile;
+  private final boolean preresolve;
+  private final boolean offline;
+  private final boolean live;
+  private final int liveRate;
+  private final String launcher;
+  private final String launcherHeap;
+  private final boolean journal;
+  private final int lockWaitSeconds;
+
+  private FinishingSettings(final FinishingConfig config, final Logger logger) {
+    this.skip = config.getBoolean(PROPERTY_SKIP, false);
+
+    final String foundMode = config.getString(PROPERTY_MODE, MODE_FORK).trim().toLowerCase(Locale.ENGLISH);
+    if (MODE_INPROCESS.equals(foundMode) || MODE_WORKER.equals(foundMode) || MODE_FORK.equals(foundMode)) {
+      this.mode = foundMode;
+    } else {
+      logger.error(String.format("Detected illegal value '%s' for '%s', mode '%s' in use", foundMode, PROPERTY_MODE, MODE_FORK));
+      this.mode = MODE_FORK;
+    }
+
+    this.workers = config.getPositiveInt(PROPERTY_WORKERS, 1, logger, "single worker");
+    this.batch = config.getBoolean(PROPERTY_BATCH, false);
+    this.threads = config.getPositiveInt(PROPERTY_THREADS, 1, logger, "single thread");
+    this.forceBudgetSeconds = config.getPositiveInt(PROPERTY_FORCE_BUDGET, DEFAULT_FORCE_BUDGET_SECONDS, logger,
+        "default " + DEFAULT_FORCE_BUDGET_SECONDS + " seconds");
+    final int processors = Runtime.getRuntime().availableProcessors();
+    this.forceThreads = config.getPositiveInt(PROPERTY_FORCE_THREADS, processors, logger, processors + " thread(s)");
+    this.report = config.getBoolean(PROPERTY_REPORT, false);
+    this.reportFile = config.getString(PROPERTY_REPORT_FILE, null);
+    this.preresolve = config.getBoolean(PROPERTY_PRERESOLVE, true);
+    this.offline = config.getBoolean(PROPERTY_OFFLINE, false);
+    this.live = config.getBoolean(PROPERTY_LIVE, false);
+    this.liveRate = config.getPositiveInt(PROPERTY_LIVE_RATE, DEFAULT_LIVE_RATE, logger,
+        "default " + DEFAULT_LIVE_RATE + " lines per second");
+
+    final String foundLauncher = config.getString(PROPERTY_LAUNCHER, LAUNCHER_INVOKER).trim().toLowerCase(Locale.ENGLISH);
+    if (LAUNCHER_INVOKER.equals(foundLauncher) || LAUNCHER_FAST.equals(foundLauncher)) {
+      this.launcher = foundLauncher;
+    } else {
+      logger.error(String.format("Detected illegal value '%s' for '%s', launcher '%s' in use", foundLauncher, PROPERTY_LAUNCHER, LAUNCHER_INVOKER));
+      this.launcher = LAUNCHER_INVOKER;
+    }
+
+    final String foundHeap = config.getString(PROPERTY_LAUNCHER_HEAP, FastStartLauncher.DEFAULT_HEAP).trim();
+    if (foundHeap.matches("\\d+[kKmMgG]?")) {
+      this.launcherHeap = foundHeap;
+    } else {
+      logger.error(String.format("Detected illegal value '%s' for '%s', heap '%s' in use", foundHeap, PROPERTY_LAUNCHER_HEAP, FastStartLauncher.DEFAULT_HEAP));
+      this.launcherHeap = FastStartLauncher.DEFAULT_HEAP;
+    }
+    this.journal = config.getBoolean(PROPERTY_JOURNAL, false);
+    this.lockWaitSeconds = config.getPositiveInt(PROPERTY_LOCK_WAIT, DEFAULT_LOCK_WAIT_SECONDS, logger,
+        "default " + DEFAULT_LOCK_WAIT_SECONDS + " seconds");
+  }
+
+  static FinishingSettings of(final FinishingConfig config, final Logger logger) {
+    return new FinishingSettings(config, logger);
+  }
+
+  boolean isSkip() {
+    return this.skip;
+  }
+
+  String getMode() {
+    return this.mode;
+  }
+
+  int getWorkers() {
+    return this.workers;
+  }
+
+  boolean isBatch() {
+    return this.batch;
+  }
+
+  int getThreads() {
+    return this.threads;
+  }
+
+  int getForceBudgetSeconds() {
+    return this.forceBudgetSeconds;
+  }
+
+  int getForceThreads() {
+    return this.forceThreads;
+  }
+
+  boolean isReport() {
+    return this.report;
+  }
+
+  /**
+   * Path of report file defined by user, null if not defined.
+   */
+  String getReportFile() {
+    return this.reportFile;
+  }
+
+  boolean isPreresolve() {
+    return this.preresolve;
+  }
+
+  /**
+   * Allow offline mode of finishing maven process if all plugins are pre-resolved.
+   */
+  boolean isOffline() {
+    return this.offline;
+  }
+
+  boolean isLive() {
+    return this.live;
+  }
+
+  /**
+   * Max number of lines per second printed for single task in live mode.
+   */
+  int getLiveRate() {
+    return this.liveRate;
+  }
+
+  String getLauncher() {
+    return this.launcher;
+  }
+
+  /**
+   * Max heap of maven process started by fast launcher, in format of -Xmx option.
+   */
+  String getLauncherHeap() {
+    return this.launcherHeap;
+  }
+
+  boolean isJournal() {
+    return this.journal;
+  }
+
+  /**
+   * Max time to wait for release of finishing lock held by another session, after that finishing is made without lock.
+   */
+  int getLockWaitSeconds() {
+    return this.lockWaitSeconds;
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import static java.lang.String.format;
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable description of single finishing execution, it doesn't keep any reference to maven project model.
+ */
+final class FinishingTask {
+  private final int projectIndex;
+  private final String projectId;
+  private final String artifactId;
+  private final File pomFile;
+  private final File baseDir;
+  private final File buildDirectory;
+  private final String pluginKey;
+  private final String pluginId;
+  private final String executionId;
+  private final List<String> goals;
+  private final String phase;
+  private final String configuration;
+  private final int timeoutSeconds;
+  private final boolean saveLog;
+  private final File logFolder;
+  private final boolean gzipLog;
+  private final int logTailLines;
+  private final boolean cache;
+  private final List<String> cacheInputs;
+  private final boolean coalesce;
+  private final boolean coalesced;
+
+  FinishingTask(
+      final int projectIndex,
+      final String projectId,
+      final String artifactId,
+      final File pomFile,
+      final File baseDir,
+      final File buildDirectory,
+      final String pluginKey,
+      final String pluginId,
+      final String executionId,
+      final List<String> goals,
+      final String phase,
+      final String configuration,
+      final FinishingTaskSettings settings
+  ) {
+    this.projectIndex = projectIndex;
+    this.projectId = projectId;
+    this.artifactId = artifactId;
+    this.pomFile = pomFile;
+    this.baseDir = baseDir;
+    this.buildDirectory = buildDirectory;
+    this.pluginKey = pluginKey;
+    this.pluginId = pluginId;
+    this.executionId = executionId;
+    this.goals = Collections.unmodifiableList(new ArrayList<>(goals));
+    this.phase = phase;
+    this.configuration = configuration;
+    this.timeoutSeconds = settings.getTimeoutSeconds();
+    this.saveLog = settings.isSaveLog();
+    this.logFolder = settings.getLogFolder();
+    this.gzipLog = settings.isGzipLog();
+    this.logTailLines = settings.getLogTailLines();
+    this.cache = settings.isCache();
+    this.cacheInputs = settings.getCacheInputs();
+    this.coalesce = settings.isCoalesce();
+    this.coalesced = false;
+  }
+
+  private FinishingTask(final FinishingTask task, final boolean coalesced) {
+    this.projectIndex = task.projectIndex;
+    this.projectId = task.projectId;
+    this.artifactId = task.artifactId;
+    this.pomFile = task.pomFile;
+    this.baseDir = task.baseDir;
+    this.buildDirectory = task.buildDirectory;
+    this.pluginKey = task.pluginKey;
+    this.pluginId = task.pluginId;
+    this.executionId = task.executionId;
+    this.goals = task.goals;
+    this.phase = task.phase;
+    this.configuration = task.configuration;
+    this.timeoutSeconds = task.timeoutSeconds;
+    this.saveLog = task.saveLog;
+    this.logFolder = task.logFolder;
+    this.gzipLog = task.gzipLog;
+    this.logTailLines = task.logTailLines;
+    this.cache = task.cache;
+    this.cacheInputs = task.cacheInputs;
+    this.coalesce = task.coalesce;
+    this.coalesced = coalesced;
+  }
+
+  /**
+   * Make copy of the task which represents identical tasks of several projects, such task must be executed only for its own project.
+   */
+  FinishingTask asCoalesced() {
+    return new FinishingTask(this, true);
+  }
+
+  int getProjectIndex() {
+    return this.projectIndex;
+  }
+
+  String getProjectId() {
+    return this.projectId;
+  }
+
+  String getArtifactId() {
+    return this.artifactId;
+  }
+
+  File getPomFile() {
+    return this.pomFile;
+  }
+
+  File getBaseDir() {
+    return this.baseDir;
+  }
+
+  File getBuildDirectory() {
+    return this.buildDirectory;
+  }
+
+  String getPluginKey() {
+    return this.pluginKey;
+  }
+
+  String getPluginId() {
+    return this.pluginId;
+  }
+
+  String getExecutionId() {
+    return this.executionId;
+  }
+
+  List<String> getGoals() {
+    return this.goals;
+  }
+
+  String getPhase() {
+    return this.phase;
+  }
+
+  /**
+   * Text representation of execution configuration merged with plugin configuration, empty if there is no configuration.
+   */
+  String getConfiguration() {
+    return this.configuration;
+  }
+
+  int getTimeoutSeconds() {
+    return this.timeoutSeconds;
+  }
+
+  boolean isSaveLog() {
+    return this.saveLog;
+  }
+
+  File getLogFolder() {
+    return this.logFolder;
+  }
+
+  boolean isGzipLog() {
+    return this.gzipLog;
+  }
+
+  int getLogTailLines() {
+    return this.logTailLines;
+  }
+
+  boolean isCache() {
+    return this.cache;
+  }
+
+  List<String> getCacheInputs() {
+    return this.cacheInputs;
+  }
+
+  boolean isCoalesce() {
+    return this.coalesce;
+  }
+
+  boolean isCoalesced() {
+    return this.coalesced;
+  }
+
+  /**
+   * Key of task, tasks with the same key in different projects make the same action and can be executed once.
+   */
+  String makeCoalesceKey() {
+    return this.pluginId + '|' + this.executionId + '|' + this.phase + '|' + this.goals + '|' + this.configuration;
+  }
+
+  /**
+   * Key of task in finishing journal, coalesced tasks of different projects share the same key.
+   */
+  String makeJournalKey() {
+    return this.coalesce ? makeCoalesceKey() : this.projectId + '|' + makeCoalesceKey();
+  }
+
+  List<String> makeGoals() {
+    final List<String> result = new ArrayList<>();
+    for (final String g : this.goals) {
+      result.add(this.pluginKey + ':' + g + '@' + this.executionId);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return format("Finishing task(%s, %s, %s, %s, %s)", this.pomFile, this.phase, this.projectId, this.pluginId, this.executionId);
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+/**
+ * Metrics of executed finishing task, all times are in milliseconds.
+ */
+public final class FinishingTaskMetrics {
+  private final String projectId;
+  private final String executionId;
+  private final String phase;
+  private final long queueWait;
+  private final long launchTime;
+  private final long time;
+  private final int exitCode;
+  private final long outputLines;
+  private final long outputBytes;
+  private final boolean timedOut;
+  private final int batchSize;
+  private final String error;
+  private final boolean skipped;
+
+  private FinishingTaskMetrics(final FinishingTask task) {
+    this.projectId = task.getProjectId();
+    this.executionId = task.getExecutionId();
+    this.phase = task.getPhase();
+    this.queueWait = 0L;
+    this.launchTime = 0L;
+    this.time = 0L;
+    this.exitCode = 0;
+    this.outputLines = 0L;
+    this.outputBytes = 0L;
+    this.timedOut = false;
+    this.batchSize = 1;
+    this.error = null;
+    this.skipped = true;
+  }
+
+  FinishingTaskMetrics(final FinishingTask task, final FinishingTaskResult result, final long finishingStartTime) {
+    this.projectId = task.getProjectId();
+    this.executionId = task.getExecutionId();
+    this.phase = task.getPhase();
+    this.queueWait = Math.max(0L, result.getStartTime() - finishingStartTime);
+    this.launchTime = result.getLaunchTime();
+    this.time = result.getTime();
+    this.exitCode = result.getExitCode();
+    this.outputLines = result.getOutputLines();
+    this.outputBytes = result.getOutputBytes();
+    this.timedOut = result.isTimedOut();
+    this.batchSize = result.getBatchSize();
+    this.error = result.isError() ? makeErrorText(result.getError()) : null;
+    this.skipped = false;
+  }
+
+  private static String makeErrorText(final Throwable error) {
+    final String message = error.getMessage();
+    return message == null || message.trim().isEmpty() ? error.getClass().getName() : error.getClass().getName() + ": " + message;
+  }
+
+  /**
+   * Make metrics of task which was not executed because its result is found in cache.
+   */
+  static FinishingTaskMetrics skipped(final FinishingTask task) {
+    return new FinishingTaskMetrics(task);
+  }
+
+  public String getProjectId() {
+    return this.projectId;
+  }
+
+  public String getExecutionId() {
+    return this.executionId;
+  }
+
+  public String getPhase() {
+    return this.phase;
+  }
+
+  /**
+   * Time between start of finishing and start of the task.
+   */
+  public long getQueueWait() {
+    return this.queueWait;
+  }
+
+  /**
+   * Time between start of external process and its first output, 0 if task was not executed in external process.
+   */
+  public long getLaunchTime() {
+    return this.launchTime;
+  }
+
+  /**
+   * Whole time of task execution.
+   */
+  public long getTime() {
+    return this.time;
+  }
+
+  public int getExitCode() {
+    return this.exitCode;
+  }
+
+  public long getOutputLines() {
+    return this.outputLines;
+  }
+
+  public long getOutputBytes() {
+    return this.outputBytes;
+  }
+
+  public boolean isTimedOut() {
+    return this.timedOut;
+  }
+
+  /**
+   * Check that task was executed by maven process together with other tasks, time and output of the process are shared by all its tasks.
+   */
+  public boolean isBatched() {
+    return this.batchSize > 1;
+  }
+
+  /**
+   * Number of tasks executed by the same maven process, 1 if the task was executed alone.
+   */
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  /**
+   * Check that task was not executed because it is unchanged since its last successful execution.
+   */
+  public boolean isSkipped() {
+    return this.skipped;
+  }
+
+  public boolean isError() {
+    return this.error != null;
+  }
+
+  /**
+   * Error class name and its message or null if task completed successfully.
+   */
+  public String getError() {
+    return this.error;
+  }
+}
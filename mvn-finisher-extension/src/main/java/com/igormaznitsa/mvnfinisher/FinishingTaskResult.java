@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+/**
+ * Result of finishing task execution.
+ */
+final class FinishingTaskResult {
+  private final long startTime;
+  private final long time;
+  private final long launchTime;
+  private final int exitCode;
+  private final long outputLines;
+  private final long outputBytes;
+  private final boolean timedOut;
+  private final int batchSize;
+  private final Throwable error;
+
+  FinishingTaskResult(final long startTime, final long time, final Throwable error) {
+    this(startTime, time, 0L, error == null ? 0 : -1, 0L, 0L, false, 1, error);
+  }
+
+  FinishingTaskResult(
+      final long startTime,
+      final long time,
+      final long launchTime,
+      final int exitCode,
+      final long outputLines,
+      final long outputBytes,
+      final boolean timedOut,
+      final int batchSize,
+      final Throwable error
+  ) {
+    this.startTime = startTime;
+    this.time = time;
+    this.launchTime = launchTime;
+    this.exitCode = exitCode;
+    this.outputLines = outputLines;
+    this.outputBytes = outputBytes;
+    this.timedOut = timedOut;
+    this.batchSize = batchSize;
+    this.error = error;
+  }
+
+  long getStartTime() {
+    return this.startTime;
+  }
+
+  long getTime() {
+    return this.time;
+  }
+
+  /**
+   * Time between start of process and its first output line, 0 if not detected.
+   */
+  long getLaunchTime() {
+    return this.launchTime;
+  }
+
+  int getExitCode() {
+    return this.exitCode;
+  }
+
+  long getOutputLines() {
+    return this.outputLines;
+  }
+
+  long getOutputBytes() {
+    return this.outputBytes;
+  }
+
+  boolean isTimedOut() {
+    return this.timedOut;
+  }
+
+  /**
+   * Number of tasks executed by the same maven process, they share its time and output.
+   */
+  int getBatchSize() {
+    return this.batchSize;
+  }
+
+  Throwable getError() {
+    return this.error;
+  }
+
+  boolean isError() {
+    return this.error != null;
+  }
+}
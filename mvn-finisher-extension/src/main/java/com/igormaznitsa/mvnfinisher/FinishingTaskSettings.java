@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_CACHE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_CACHE_INPUTS;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_COALESCE;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_LOG_TAIL;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_SAVE_LOG;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_SAVE_LOG_FOLDER;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_SAVE_LOG_GZIP;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_SKIP;
+import static com.igormaznitsa.mvnfinisher.FinishingConfig.PROPERTY_TASK_TIMEOUT;
+
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Immutable settings of finishing task, resolved once per project and for plugin executions which override them.
+ */
+final class FinishingTaskSettings {
+
+  static final int DEFAULT_TIMEOUT_SECONDS = 120;
+  static final int DEFAULT_LOG_TAIL_LINES = 500;
+
+  private final boolean skip;
+  private final int timeoutSeconds;
+  private final boolean saveLog;
+  private final File logFolder;
+  private final boolean gzipLog;
+  private final int logTailLines;
+  private final boolean cache;
+  private final List<String> cacheInputs;
+  private final boolean coalesce;
+
+  private FinishingTaskSettings(final FinishingConfig config, final File defaultLogFolder, final Logger logger) {
+    this.skip = config.getBoolean(PROPERTY_SKIP, false);
+    this.timeoutSeconds = config.getPositiveInt(PROPERTY_TASK_TIMEOUT, DEFAULT_TIMEOUT_SECONDS, logger,
+        "default " + DEFAULT_TIMEOUT_SECONDS + " seconds");
+    this.saveLog = config.getBoolean(PROPERTY_SAVE_LOG, false);
+    final String folder = config.getString(PROPERTY_SAVE_LOG_FOLDER, null);
+    this.logFolder = folder == null ? defaultLogFolder : new File(folder);
+    this.gzipLog = config.getBoolean(PROPERTY_SAVE_LOG_GZIP, false);
+    this.logTailLines = config.getPositiveInt(PROPERTY_LOG_TAIL, DEFAULT_LOG_TAIL_LINES, logger,
+        "default " + DEFAULT_LOG_TAIL_LINES + " lines");
+    this.cache = config.getBoolean(PROPERTY_CACHE, false);
+    this.cacheInputs = Collections.unmodifiableList(Arrays.stream(config.getString(PROPERTY_CACHE_INPUTS, "").split(","))
+        .map(String::trim)
+        .filter(x -> !x.isEmpty())
+        .collect(Collectors.toList()));
+    this.coalesce = config.getBoolean(PROPERTY_COALESCE, false);
+  }
+
+  static FinishingTaskSettings of(final FinishingConfig config, final File defaultLogFolder, final Logger logger) {
+    return new FinishingTaskSettings(config, defaultLogFolder, logger);
+  }
+
+  boolean isSkip() {
+    return this.skip;
+  }
+
+  int getTimeoutSeconds() {
+    return this.timeoutSeconds;
+  }
+
+  boolean isSaveLog() {
+    return this.saveLog;
+  }
+
+  File getLogFolder() {
+    return this.logFolder;
+  }
+
+  boolean isGzipLog() {
+    return this.gzipLog;
+  }
+
+  int getLogTailLines() {
+    return this.logTailLines;
+  }
+
+  boolean isCache() {
+    return this.cache;
+  }
+
+  /**
+   * Input files and folders of task, paths are relative to project folder.
+   */
+  List<String> getCacheInputs() {
+    return this.cacheInputs;
+  }
+
+  boolean isCoalesce() {
+    return this.coalesce;
+  }
+}
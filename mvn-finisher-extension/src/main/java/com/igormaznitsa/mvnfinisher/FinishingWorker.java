@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Entry point of long-lived worker JVM which executes maven requests of finishing tasks through embedded maven CLI.
+ * Worker is connected to the extension through local socket, it reads requests and sends output lines and exit code as frames.
+ * Strings are sent as length-prefixed UTF-8 bytes. System properties are restored after every request so that requests don't affect each other.
+ * Class is started in separate JVM and must not depend on anything except JDK.
+ */
+public final class FinishingWorker {
+
+  static final int FRAME_OUTPUT = 'O';
+  static final int FRAME_ERROR = 'E';
+  static final int FRAME_EXIT = 'X';
+
+  /**
+   * System property set in worker JVM, the extension loaded by maven of the worker doesn't register itself for shutdown then.
+   */
+  static final String PROPERTY_WORKER = "mvn.finisher.worker";
+
+  private static final String PROPERTY_MULTIMODULE_PROJECT_DIRECTORY = "maven.multiModuleProjectDirectory";
+
+  private FinishingWorker() {
+  }
+
+  public static void main(final String... args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("Expected arguments: <port> <token>");
+      System.exit(1);
+    }
+    final int port = Integer.parseInt(args[0]);
+    final String token = args[1];
+
+    final Class<?> mavenCliClass = Class.forName("org.apache.maven.cli.MavenCli");
+    final Method doMain = mavenCliClass.getMethod("doMain", String[].class, String.class, PrintStream.class, PrintStream.class);
+    System.setProperty(PROPERTY_WORKER, "true");
+
+    try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      socket.setTcpNoDelay(true);
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      writeString(out, token);
+      out.flush();
+
+      while (true) {
+        final String workingDirectory;
+        try {
+          workingDirectory = readString(in);
+        } catch (EOFException ex) {
+          break;
+        }
+        final String[] mavenArgs = new String[in.readInt()];
+        for (int i = 0; i < mavenArgs.length; i++) {
+          mavenArgs[i] = readString(in);
+        }
+
+        final Properties systemProperties = (Properties) System.getProperties().clone();
+        System.setProperty(PROPERTY_MULTIMODULE_PROJECT_DIRECTORY, findMultiModuleProjectDirectory(new File(workingDirectory)).getAbsolutePath());
+
+        final PrintStream taskOut = new PrintStream(new FrameOutputStream(out, FRAME_OUTPUT), true, StandardCharsets.UTF_8.name());
+        final PrintStream taskErr = new PrintStream(new FrameOutputStream(out, FRAME_ERROR), true, StandardCharsets.UTF_8.name());
+        int exitCode;
+        try {
+          exitCode = (Integer) doMain.invoke(mavenCliClass.getConstructor().newInstance(), mavenArgs, workingDirectory, taskOut, taskErr);
+        } catch (InvocationTargetException ex) {
+          ex.getCause().printStackTrace(taskErr);
+          exitCode = 1;
+        } catch (Exception ex) {
+          ex.printStackTrace(taskErr);
+          exitCode = 1;
+        } finally {
+          System.setProperties(systemProperties);
+        }
+        taskOut.close();
+        taskErr.close();
+        synchronized (out) {
+          out.writeByte(FRAME_EXIT);
+          out.writeInt(exitCode);
+          out.flush();
+        }
+      }
+    }
+    System.exit(0);
+  }
+
+  static void writeString(final DataOutputStream out, final String text) throws IOException {
+    final byte[] data = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(data.length);
+    out.write(data);
+  }
+
+  static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Illegal string length: " + length);
+    }
+    final byte[] data = new byte[length];
+    in.readFully(data);
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+  private static File findMultiModuleProjectDirectory(final File workingDirectory) {
+    File current = workingDirectory.getAbsoluteFile();
+    while (current != null) {
+      if (new File(current, ".mvn").isDirectory()) {
+        return current;
+      }
+      current = current.getParentFile();
+    }
+    return workingDirectory;
+  }
+
+  private static final class FrameOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final int frameType;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+
+    private FrameOutputStream(final DataOutputStream out, final int frameType) {
+      this.out = out;
+      this.frameType = frameType;
+    }
+
+    @Override
+    public synchronized void write(final int b) throws IOException {
+      if (b == '\n') {
+        this.sendLine();
+      } else if (b != '\r') {
+        this.buffer.write(b);
+      }
+    }
+
+    private void sendLine() throws IOException {
+      synchronized (this.out) {
+        this.out.writeByte(this.frameType);
+        this.out.writeInt(this.buffer.size());
+        this.buffer.writeTo(this.out);
+        this.out.flush();
+      }
+      this.buffer.reset();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (this.buffer.size() > 0) {
+        this.sendLine();
+      }
+    }
+  }
+}
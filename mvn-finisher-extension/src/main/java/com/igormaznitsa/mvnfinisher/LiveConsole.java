@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import static java.lang.String.format;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Prints output lines of running finishing tasks. Lines of all tasks are placed into one bounded queue and printed by single thread, so that pump threads are never blocked by console.
+ */
+final class LiveConsole implements AutoCloseable {
+
+  private static final String THREAD_NAME = "mvn-finisher-live-console";
+  private static final int QUEUE_SIZE = 8192;
+  private static final int DRAIN_SIZE = 256;
+  private static final long CLOSE_WAIT_MS = 2000L;
+
+  private final Logger logger;
+  private final int linesPerSecond;
+  private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+  private final AtomicLong droppedLines = new AtomicLong();
+  private final Thread thread;
+  private volatile boolean closed;
+
+  LiveConsole(final Logger logger, final int linesPerSecond) {
+    this.logger = logger;
+    this.linesPerSecond = Math.max(1, linesPerSecond);
+    this.thread = new Thread(this::printLoop, THREAD_NAME);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Make channel for output of single task.
+   *
+   * @param prefix prefix of every line of the task
+   * @return channel, must be closed after task completion
+   */
+  Channel openChannel(final String prefix) {
+    return new Channel(prefix);
+  }
+
+  private void offer(final String line) {
+    if (!this.queue.offer(line)) {
+      this.droppedLines.incrementAndGet();
+    }
+  }
+
+  private void printLoop() {
+    final List<String> buffer = new ArrayList<>(DRAIN_SIZE);
+    try {
+      while (!this.closed || !this.queue.isEmpty()) {
+        final String first = this.queue.poll(100L, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          buffer.add(first);
+          this.queue.drainTo(buffer, DRAIN_SIZE - 1);
+          for (final String line : buffer) {
+            this.logger.info(line);
+          }
+          buffer.clear();
+        }
+        final long dropped = this.droppedLines.getAndSet(0L);
+        if (dropped > 0L) {
+          this.logger.warn(format("... %d line(s) of finishing tasks dropped because console is too slow", dropped));
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    try {
+      this.thread.join(CLOSE_WAIT_MS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Output of single task, lines over allowed rate are not printed but counted.
+   */
+  final class Channel implements AutoCloseable {
+
+    private final String prefix;
+    private long allowance;
+    private long lastCheck;
+    private long suppressed;
+
+    private Channel(final String prefix) {
+      this.prefix = prefix;
+      this.allowance = linesPerSecond;
+      this.lastCheck = System.nanoTime();
+    }
+
+    synchronized void onLine(final String line, final boolean error) {
+      final long now = System.nanoTime();
+      final long refill = (now - this.lastCheck) * linesPerSecond / 1000000000L;
+      if (refill > 0L) {
+        this.allowance = Math.min(linesPerSecond, this.allowance + refill);
+        this.lastCheck = now;
+      }
+      if (this.allowance <= 0L) {
+        this.suppressed++;
+        return;
+      }
+      this.allowance--;
+      flushSuppressed();
+      offer(this.prefix + (error ? "ERR> " : "") + line);
+    }
+
+    private void flushSuppressed() {
+      if (this.suppressed > 0L) {
+        offer(format("%s... %d line(s) suppressed", this.prefix, this.suppressed));
+        this.suppressed = 0L;
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      flushSuppressed();
+    }
+  }
+}
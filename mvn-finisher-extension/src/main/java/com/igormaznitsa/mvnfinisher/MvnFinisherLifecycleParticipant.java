@@ -18,59 +18,59 @@ package com.igormaznitsa.mvnfinisher;
 
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.String.format;
-import static java.util.Objects.requireNonNull;
 
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOError;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
 import org.apache.maven.execution.BuildFailure;
 import org.apache.maven.execution.BuildSuccess;
 import org.apache.maven.execution.BuildSummary;
-import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.ProjectDependencyGraph;
+import org.apache.maven.lifecycle.internal.LifecycleExecutionPlanCalculator;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.invoker.CommandLineConfigurationException;
 import org.apache.maven.shared.invoker.DefaultInvocationRequest;
-import org.apache.maven.shared.invoker.DefaultInvoker;
 import org.apache.maven.shared.invoker.InvocationRequest;
-import org.apache.maven.shared.invoker.InvocationResult;
-import org.apache.maven.shared.invoker.Invoker;
 import org.apache.maven.shared.invoker.MavenCommandLineBuilder;
 import org.apache.maven.shared.invoker.MavenInvocationException;
-import org.apache.maven.shared.utils.Os;
-import org.apache.maven.shared.utils.StringUtils;
-import org.apache.maven.shared.utils.cli.CommandLineException;
 import org.apache.maven.shared.utils.cli.CommandLineTimeOutException;
-import org.apache.maven.shared.utils.cli.CommandLineUtils;
 import org.apache.maven.shared.utils.cli.Commandline;
 import org.apache.maven.shared.utils.cli.ShutdownHookUtils;
-import org.apache.maven.shared.utils.cli.shell.BourneShell;
-import org.apache.maven.shared.utils.cli.shell.CmdShell;
-import org.apache.maven.shared.utils.cli.shell.CommandShell;
-import org.apache.maven.shared.utils.cli.shell.Shell;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.eclipse.aether.RepositorySystem;
 
 @Component(role = AbstractMavenLifecycleParticipant.class, hint = "mvnfinisher")
 public class MvnFinisherLifecycleParticipant extends AbstractMavenLifecycleParticipant {
@@ -79,467 +79,1276 @@ public class MvnFinisherLifecycleParticipant extends AbstractMavenLifecycleParti
   public static final String FINISHING_PHASE_OK = "finish-ok";
   public static final String FINISHING_PHASE_ERROR = "finish-error";
   public static final String FINISHING_PHASE_FORCE = "finish-force";
+  public static final String FINISHING_PHASE_ASYNC = "finish-async";
   public static final String FINISHING_FLAG_FILE = ".finishingStarted";
   private static final String SHUTDOWN_HOOK_THREAD_ID = "mvn-finisher-shutdown-hook-thread";
   private static final String FLAG_FINISHING_SESSION = "mvn.finisher.finishing.session";
-  private static final Set<String> ALL_FINISHING_PHASES = new HashSet<>(Arrays.asList(FINISHING_PHASE, FINISHING_PHASE_ERROR, FINISHING_PHASE_OK));
-  private static final Set<String> ERROR_FINISHING_PHASES = new HashSet<>(Arrays.asList(FINISHING_PHASE, FINISHING_PHASE_ERROR));
-  private static final Set<String> OK_FINISHING_PHASES = new HashSet<>(Arrays.asList(FINISHING_PHASE, FINISHING_PHASE_OK));
+  private static final Set<String> ALL_FINISHING_PHASES = new HashSet<>(Arrays.asList(FINISHING_PHASE, FINISHING_PHASE_ERROR, FINISHING_PHASE_OK, FINISHING_PHASE_FORCE, FINISHING_PHASE_ASYNC));
+  private static final Set<String> ERROR_FINISHING_PHASES = new HashSet<>(Arrays.asList(FINISHING_PHASE, FINISHING_PHASE_ERROR, FINISHING_PHASE_ASYNC));
+  private static final Set<String> OK_FINISHING_PHASES = new HashSet<>(Arrays.asList(FINISHING_PHASE, FINISHING_PHASE_OK, FINISHING_PHASE_ASYNC));
   private static final Set<String> FORCE_FINISHING_PHASES = new HashSet<>(Arrays.asList(FINISHING_PHASE, FINISHING_PHASE_FORCE));
-  private static final int MAX_FINISH_TASK_ALLOWED_TIME_SECONDS = 120;
-  private static final String PROPERTY_SKIP = "mvn.finisher.skip";
-  private static final String PROPERTY_SAVE_LOG = "mvn.finisher.log.save";
-  private static final String PROPERTY_SAVE_LOG_FOLDER = "mvn.finisher.log.folder";
-  private static final String PROPERTY_TASK_TIMEOUT = "mvn.finisher.task.timeout";
+  private static final String DEFAULT_REPORT_FILE_NAME = "mvn.finisher.report.json";
+  private static final long JOURNAL_CHECK_INTERVAL_MS = 1000L;
+  private static final Pattern SECRET_PROPERTY_NAME = Pattern.compile("(?i)(password|passwd|passphrase|secret|token|credential|apikey|api\\.key|auth)");
+  private static final Pattern MOJO_START_PATTERN = Pattern.compile("---\\s+\\S+\\s+\\(([^)]+)\\)\\s+@\\s");
+  private static final Pattern MOJO_FAILED_PATTERN = Pattern.compile("Failed to execute goal\\s+\\S+\\s+\\(([^)]+)\\)\\s+on project");
   private static final AtomicBoolean shutdowning = new AtomicBoolean();
-  private final Map<MavenSession, List<MavenProject>> sessionProjectMap = new ConcurrentHashMap<>();
-  private final Map<MavenSession, Boolean> processingSessions = new ConcurrentHashMap<>();
-  private final List<MavenSession> nonProcessedMavenSessions = new CopyOnWriteArrayList<>();
+  private static final AtomicInteger registeredShutdownHooks = new AtomicInteger();
+  private static final Set<MvnFinisherLifecycleParticipant> participants = Collections.newSetFromMap(new WeakHashMap<>());
+  private final SessionRegistry sessionRegistry = new SessionRegistry();
   @Requirement
   private Logger logger;
+  @Requirement
+  private BuildPluginManager pluginManager;
+  @Requirement
+  private LifecycleExecutionPlanCalculator executionPlanCalculator;
+  @Requirement
+  private RepositorySystem repositorySystem;
 
   public MvnFinisherLifecycleParticipant() {
-    //--heat invocator because during force shutdown some class can be not found
-    heatInvocator();
-    //----
-    if (!isShutdownActive()) {
-      ShutdownHookUtils.addShutDownHook(new Thread(this::shutdown, SHUTDOWN_HOOK_THREAD_ID));
+    // maven of finishing worker creates the extension for every request, it has nothing to finish
+    if (!isShutdownActive() && !Boolean.getBoolean(FinishingWorker.PROPERTY_WORKER)) {
+      registerForShutdown(this);
     }
   }
 
-  private static String findProperty(
-      final MavenSession session,
-      final MavenProject project,
-      final String key,
-      final String defaultValue
-  ) {
-    final Properties properties = new Properties();
-    if (project != null) {
-      properties.putAll(project.getProperties());
+  /**
+   * Constructor of participant used outside of plexus container by {@link FinishingProbe}, it is not registered for shutdown.
+   */
+  MvnFinisherLifecycleParticipant(final Logger logger) {
+    this.logger = logger;
+  }
+
+  /**
+   * Single shutdown hook is registered per JVM, it finishes sessions of all live participants. Participants are weakly referenced
+   * so that participants of disposed extension realms can be collected.
+   */
+  private static void registerForShutdown(final MvnFinisherLifecycleParticipant participant) {
+    synchronized (participants) {
+      participants.add(participant);
     }
-    if (session != null) {
-      properties.putAll(session.getSystemProperties());
-      properties.putAll(session.getUserProperties());
+    if (registeredShutdownHooks.compareAndSet(0, 1)) {
+      ShutdownHookUtils.addShutDownHook(new Thread(MvnFinisherLifecycleParticipant::shutdownAll, SHUTDOWN_HOOK_THREAD_ID));
+    }
+  }
+
+  static int countRegisteredShutdownHooks() {
+    return registeredShutdownHooks.get();
+  }
+
+  private static void shutdownAll() {
+    if (shutdowning.compareAndSet(false, true)) {
+      final List<MvnFinisherLifecycleParticipant> found;
+      synchronized (participants) {
+        found = new ArrayList<>(participants);
+      }
+      for (final MvnFinisherLifecycleParticipant participant : found) {
+        participant.shutdown();
+      }
     }
-    return properties.getProperty(key, defaultValue);
   }
 
   private static boolean isShutdownActive() {
     return SHUTDOWN_HOOK_THREAD_ID.equals(Thread.currentThread().getName()) || shutdowning.get();
   }
 
-  private void silentClassLoad(final String name) {
+  private FinishingLock tryLockFinishingOfSession(final MavenSession session, final long waitMs) throws MavenExecutionException {
+    final File baseDirectory = new File(session.getRequest().getBaseDirectory());
+    final File lockFile = new File(baseDirectory, FINISHING_FLAG_FILE);
     try {
-      Class.forName(name);
-    } catch (Exception ex) {
-      //DO NOTHING
+      final FinishingLock result = FinishingLock.tryLock(lockFile, Math.max(0L, waitMs), this.logger);
+      this.logger.debug("Finishing lock obtained: " + lockFile);
+      return result;
+    } catch (IOException ex) {
+      throw new MavenExecutionException("Error during attempt to lock session folder for finishing", ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MavenExecutionException("Interrupted during wait for finishing lock of session folder", ex);
     }
   }
 
-  private void heatInvocator() {
+  private void releaseFinishingLock(final FinishingLock lock) {
     try {
-      final InvocationRequest request = new DefaultInvocationRequest();
-      request.setPomFile(new File(String.format("unknown%s.pom", Long.toString(System.nanoTime(), 20))));
-      request.setBaseDirectory(new File("unknwn_dir" + (System.nanoTime() & 0xFF)));
-      request.setBatchMode(true);
-      final Invoker invoker = new DefaultInvoker();
-      final List<String> outList = new CopyOnWriteArrayList<>();
-      invoker.setOutputHandler(outList::add);
-      invoker.setErrorHandler(outList::add);
-      InvocationResult result = invoker.execute(request);
-      requireNonNull(result.getExecutionException());
-    } catch (final Exception ex) {
-      ex.printStackTrace();
-    } finally {
-      requireNonNull(StringUtils.capitalise("ddd"));
-      requireNonNull(new Os("linux"));
-      requireNonNull(new Shell());
-      requireNonNull(new BourneShell());
-      requireNonNull(new CmdShell());
-      requireNonNull(new CommandShell());
-      requireNonNull(new MavenCommandLineBuilder());
-      requireNonNull(new Commandline.Argument());
+      lock.close();
+    } catch (IOException ex) {
+      this.logger.warn("Can't release finishing lock: " + ex.getMessage());
+    }
+  }
+
+  private void shutdown() {
+    final List<MavenSession> nonClosedSessions = this.sessionRegistry.findNonProcessed();
+    this.logger.debug("Start mvn-finisher shutdown hook, detected " + nonClosedSessions.size() + " non-closed sessions");
+    long deadline = Long.MAX_VALUE;
+    if (!nonClosedSessions.isEmpty()) {
+      final SessionRegistry.SessionState state = this.sessionRegistry.find(nonClosedSessions.get(0));
+      final int budget = state == null ? FinishingSettings.DEFAULT_FORCE_BUDGET_SECONDS : state.getPlan().getSettings().getForceBudgetSeconds();
+      this.logger.debug(format("Force finishing budget is %d seconds", budget));
+      deadline = System.currentTimeMillis() + budget * 1000L;
+    }
+    for (final MavenSession s : nonClosedSessions) {
+      if (s.getRequest() != null && s.getRequest().getStartTime() == null) {
+        this.logger.info("Ignoring unfinished session " + s + " because it was not started");
+        this.sessionRegistry.release(s);
+        continue;
+      }
       try {
-        final List<String> outList = new CopyOnWriteArrayList<>();
-        CommandLineUtils.executeCommandLine(new Commandline(new Shell()), outList::add, outList::add, 1);
-      } catch (Exception ex) {
-        //DO NOTHING
+        this.logger.debug("Force finish of unfinished session: " + s);
+        this.forceFinishSession(s, deadline);
+      } catch (MavenExecutionException ex) {
+        this.logger.error("Detected MavenExecutionException", ex);
+      } finally {
+        this.logger.debug("Session finished: " + s);
+      }
+    }
+    this.logger.debug("mvn-finisher shutdown hook work completed");
+  }
+
+  private void forceFinishSession(final MavenSession session, final long deadline) throws MavenExecutionException {
+    final SessionRegistry.SessionState state = this.sessionRegistry.find(session);
+    if (state != null) {
+      state.startForce(deadline);
+      this.finishSession(session, true);
+    }
+  }
+
+  /**
+   * Check that session build was cancelled (for instance by maven daemon) but JVM keeps working.
+   */
+  private static boolean isCancelled(final MavenSession session) {
+    if (Thread.currentThread().isInterrupted()) {
+      return true;
+    }
+    final MavenExecutionResult result = session.getResult();
+    if (result != null) {
+      for (final Throwable exception : result.getExceptions()) {
+        Throwable cause = exception;
+        for (int depth = 0; cause != null && depth < 32; depth++) {
+          if (cause instanceof InterruptedException || cause instanceof CancellationException) {
+            return true;
+          }
+          cause = cause.getCause();
+        }
       }
-      silentClassLoad("org.apache.maven.shared.utils.cli.CommandLineUtils$1");
-      silentClassLoad("org.apache.maven.shared.utils.cli.CommandLineUtils$2");
-      silentClassLoad("org.apache.maven.shared.utils.cli.StreamPumper");
-      requireNonNull(CommandLineUtils.getSystemEnvVars());
-      requireNonNull(InvocationRequest.CheckSumPolicy.Fail);
     }
+    return false;
   }
 
-  private void deleteFinishingFlagIfExist(final MavenSession session) {
-    if (!isShutdownActive()) {
-      final File baseDirectory = new File(session.getRequest().getBaseDirectory());
-      final File lockFile = new File(baseDirectory, FINISHING_FLAG_FILE);
-      if (lockFile.isFile() && !lockFile.delete()) {
-        throw new IOError(new IOException("Detected lock file can't be deleted: " + lockFile));
+  /**
+   * Finishing maven process is started offline only if the session is offline or user allowed it for pre-resolved plugins,
+   * because finishing goals can need artifacts which are not plugins (dependencies, remote snapshots).
+   */
+  private boolean isOfflineFinishing(final MavenSession session) {
+    if (session.isOffline()) {
+      return true;
+    }
+    final SessionRegistry.SessionState state = this.sessionRegistry.find(session);
+    final PluginPreresolver preresolver = state == null ? null : state.getPreresolver();
+    return preresolver != null && state.getPlan().getSettings().isOffline() && preresolver.isAllResolved(0L);
+  }
+
+  private Map<FinishingTask, FinishingTaskResult> executeUnit(
+      final MavenSession session,
+      final Map<String, MavenProject> projects,
+      final List<FinishingTask> unit,
+      final boolean inProcess,
+      final List<FinishingListener> listeners,
+      final long finishingStartTime
+  ) {
+    final Map<FinishingTask, FinishingTaskResult> result;
+    if (unit.size() == 1) {
+      final FinishingTask task = unit.get(0);
+      result = Collections.singletonMap(task, inProcess ? executeInProcess(session, projects.get(task.getProjectId()), task) : executeForked(session, task));
+    } else {
+      result = executeBatch(session, unit);
+    }
+    final SessionRegistry.SessionState state = this.sessionRegistry.find(session);
+    final FinishingJournal journal = state == null ? null : state.getJournal();
+    if (journal != null) {
+      result.forEach((task, taskResult) -> journal.markDone(task.makeJournalKey(),
+          taskResult.isError() ? AsyncFinisher.STATE_ERROR : AsyncFinisher.STATE_OK));
+    }
+    for (final FinishingListener listener : listeners) {
+      result.forEach((task, taskResult) -> {
+        try {
+          listener.onTaskFinished(new FinishingTaskMetrics(task, taskResult, finishingStartTime));
+        } catch (Exception ex) {
+          this.logger.error("Error in finishing listener " + listener.getClass().getName(), ex);
+        }
+      });
+    }
+    return result;
+  }
+
+  private List<FinishingListener> findListeners() {
+    final List<FinishingListener> result = new ArrayList<>();
+    try {
+      for (final FinishingListener listener : ServiceLoader.load(FinishingListener.class, FinishingListener.class.getClassLoader())) {
+        this.logger.debug("Detected finishing listener: " + listener.getClass().getName());
+        result.add(listener);
       }
+    } catch (ServiceConfigurationError ex) {
+      this.logger.error("Can't load finishing listeners", ex);
+    }
+    return result;
+  }
+
+  private File findReportFile(final MavenSession session, final FinishingSettings settings) {
+    if (!settings.isReport()) {
+      return null;
+    }
+    if (settings.getReportFile() != null) {
+      return new File(settings.getReportFile());
     }
+    return new File(findSessionBuildFolder(session), DEFAULT_REPORT_FILE_NAME);
+  }
+
+  private static File findSessionBuildFolder(final MavenSession session) {
+    final MavenProject topLevelProject = session.getTopLevelProject();
+    return topLevelProject == null
+        ? new File(session.getRequest().getBaseDirectory(), "target")
+        : new File(topLevelProject.getBuild().getDirectory());
   }
 
-  private boolean tryLockFinishingOfSession(final MavenSession session) throws MavenExecutionException {
+  private void startAsyncFinishing(final MavenSession session, final List<FinishingTask> tasks) {
+    final List<FinishingTask> orderedTasks = new ArrayList<>(tasks);
+    // tasks of dependent projects are executed before tasks of their dependencies
+    orderedTasks.sort((x, y) -> Integer.compare(y.getProjectIndex(), x.getProjectIndex()));
+
+    final boolean offline = isOfflineFinishing(session);
+
+    final List<AsyncFinisher.Entry> entries = new ArrayList<>();
     try {
-      final File baseDirectory = new File(session.getRequest().getBaseDirectory());
-      final File lockFile = new File(baseDirectory, FINISHING_FLAG_FILE);
-      if (lockFile.createNewFile()) {
-        this.logger.debug("Successfully created locking file flag: " + lockFile);
-        lockFile.deleteOnExit();
-        return true;
-      } else {
-        this.logger.debug("Can't create locking file flag: " + lockFile);
-        return false;
+      for (final FinishingTask task : orderedTasks) {
+        entries.add(makeDetachedEntry(session, task, offline, false, format("%s_%s.log", task.getArtifactId(), task.getExecutionId())));
+      }
+      final File folder = findSessionBuildFolder(session);
+      AsyncFinisher.start(folder, entries);
+      this.logger.info(format("Started detached process for %d async finishing task(s), status file %s",
+          entries.size(), new File(folder, AsyncFinisher.STATUS_FILE_NAME)));
+    } catch (Exception ex) {
+      this.logger.error("Can't start async finishing", ex);
+    }
+  }
+
+  /**
+   * Make task description which can be executed by external process without the current maven session.
+   *
+   * @param persistent true if the description is saved on disk, it doesn't keep environment and secret properties then
+   */
+  private AsyncFinisher.Entry makeDetachedEntry(
+      final MavenSession session,
+      final FinishingTask task,
+      final boolean offline,
+      final boolean persistent,
+      final String logFileName
+  ) throws CommandLineConfigurationException {
+    final InvocationRequest request = makeInvocationRequest(session, task, task.makeGoals(), task.getTimeoutSeconds(), offline);
+    if (persistent) {
+      final Properties properties = request.getProperties();
+      for (final String name : properties.stringPropertyNames()) {
+        if (SECRET_PROPERTY_NAME.matcher(name).find()) {
+          properties.remove(name);
+        }
+      }
+    }
+    final Commandline commandline = new MavenCommandLineBuilder().build(request);
+    // the detached process inherits environment of the current one
+    final Map<String, String> environment = persistent ? Collections.emptyMap() : findAddedEnvironment(commandline);
+    return new AsyncFinisher.Entry(
+        task.getProjectId(),
+        task.getExecutionId(),
+        task.getPhase(),
+        commandline.getWorkingDirectory() == null ? task.getBaseDir() : commandline.getWorkingDirectory(),
+        Arrays.asList(commandline.getCommandline()),
+        environment,
+        task.getTimeoutSeconds() * 1000L,
+        new File(task.getLogFolder(), logFileName));
+  }
+
+  /**
+   * Find environment variables added by command line builder to the environment of the current process.
+   */
+  private static Map<String, String> findAddedEnvironment(final Commandline commandline) {
+    final Map<String, String> systemEnvironment = System.getenv();
+    final Map<String, String> result = new LinkedHashMap<>();
+    for (final String variable : commandline.getEnvironmentVariables()) {
+      final int index = variable.indexOf('=');
+      if (index > 0) {
+        final String name = variable.substring(0, index);
+        final String value = variable.substring(index + 1);
+        if (!value.equals(systemEnvironment.get(name))) {
+          result.put(name, value);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static File findJournalFile(final MavenSession session) {
+    return new File(findSessionBuildFolder(session), FinishingJournal.FILE_NAME);
+  }
+
+  /**
+   * Execute pending force finishing tasks of previous build of the same project which was killed without finishing.
+   */
+  private void recoverJournal(final MavenSession session, final FinishingSettings settings) {
+    final File journalFile = findJournalFile(session);
+    try {
+      final int executed = FinishingJournal.recover(journalFile, settings.getForceThreads(),
+          System.currentTimeMillis() + settings.getForceBudgetSeconds() * 1000L, this.logger::warn, this.logger::error);
+      if (executed > 0) {
+        this.logger.warn(format("Executed %d pending force finishing task(s) of killed build", executed));
       }
     } catch (IOException ex) {
-      throw new MavenExecutionException("Error during attempt to lock session folder for finishing", ex);
+      this.logger.error("Can't recover finishing journal " + journalFile, ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      this.logger.warn("Recovery of finishing journal interrupted");
     }
   }
 
-  private void shutdown() {
-    if (shutdowning.compareAndSet(false, true)) {
-      final List<MavenSession> nonClosedSessions = new ArrayList<>(this.nonProcessedMavenSessions);
-      this.logger.debug("Start mvn-finisher shutdown hook, detected " + nonClosedSessions.size() + " non-closed sessions");
-      Collections.reverse(nonClosedSessions);
-      for (final MavenSession s : nonClosedSessions) {
-        if (s.getRequest() != null && s.getRequest().getStartTime() == null) {
-          this.logger.info("Ignoring unfinished session " + s + " because it was not started");
-          continue;
+  /**
+   * Start background thread which writes journal of force finishing tasks and restores it if it is deleted during build.
+   */
+  private void startJournal(final MavenSession session, final SessionRegistry.SessionState state) {
+    final Thread thread = new Thread(() -> {
+      final FinishingJournal journal = writeJournal(session, state);
+      try {
+        while (journal != null && state.getJournal() == journal) {
+          Thread.sleep(JOURNAL_CHECK_INTERVAL_MS);
+          journal.restoreIfDeleted();
         }
-        try {
-          this.logger.debug("Force finish of unfinished session: " + s);
-          this.finishSession(s, true);
-        } catch (MavenExecutionException ex) {
-          this.logger.error("Detected MavenExecutionException", ex);
-        } finally {
-          this.logger.debug("Session finished: " + s);
+      } catch (IOException ex) {
+        this.logger.warn("Can't restore finishing journal: " + ex.getMessage());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }, "mvn-finisher-journal");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Write journal of tasks which must be executed during force finishing, identical coalesced tasks are written once.
+   *
+   * @return written journal set into the session state, null if not written
+   */
+  private FinishingJournal writeJournal(final MavenSession session, final SessionRegistry.SessionState state) {
+    final Map<String, List<FinishingTask>> groups = new LinkedHashMap<>();
+    for (final FinishingTask task : state.getPlan().getTasks()) {
+      if (FORCE_FINISHING_PHASES.contains(task.getPhase())) {
+        groups.computeIfAbsent(task.makeJournalKey(), k -> new ArrayList<>()).add(task);
+      }
+    }
+    if (groups.isEmpty()) {
+      return null;
+    }
+    final List<Map.Entry<String, List<FinishingTask>>> ordered = new ArrayList<>(groups.entrySet());
+    // the same order as during force finishing
+    ordered.sort((x, y) -> {
+      final FinishingTask xTask = x.getValue().get(0);
+      final FinishingTask yTask = y.getValue().get(0);
+      final boolean xForce = FINISHING_PHASE_FORCE.equals(xTask.getPhase());
+      final boolean yForce = FINISHING_PHASE_FORCE.equals(yTask.getPhase());
+      if (xForce != yForce) {
+        return xForce ? -1 : 1;
+      }
+      return Integer.compare(yTask.getProjectIndex(), xTask.getProjectIndex());
+    });
+
+    final File journalFile = findJournalFile(session);
+    try {
+      final Map<String, AsyncFinisher.Entry> entries = new LinkedHashMap<>();
+      for (final Map.Entry<String, List<FinishingTask>> e : ordered) {
+        final FinishingTask task = e.getValue().size() > 1 ? e.getValue().get(0).asCoalesced() : e.getValue().get(0);
+        entries.put(e.getKey(), makeDetachedEntry(session, task, false, true,
+            format("%s_%s.recovered.log", task.getArtifactId(), task.getExecutionId())));
+      }
+      final FinishingJournal journal = FinishingJournal.create(journalFile, entries);
+      if (journal == null) {
+        this.logger.debug("Finishing journal is locked by another build: " + journalFile);
+      } else if (state.setJournal(journal)) {
+        return journal;
+      } else {
+        // finishing has been started before the journal was written
+        journal.close();
+      }
+    } catch (Exception ex) {
+      this.logger.warn("Can't write finishing journal " + journalFile + ": " + ex.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Merge identical tasks of different projects (usually inherited from parent) into single task of the topmost project.
+   */
+  private List<FinishingTask> coalesce(final List<FinishingTask> tasks) {
+    final Map<String, FinishingTask> topTasks = new HashMap<>();
+    final Map<String, Integer> groupSizes = new HashMap<>();
+    for (final FinishingTask task : tasks) {
+      if (task.isCoalesce()) {
+        final String key = task.makeCoalesceKey();
+        topTasks.merge(key, task, (x, y) -> x.getProjectIndex() <= y.getProjectIndex() ? x : y);
+        groupSizes.merge(key, 1, Integer::sum);
+      }
+    }
+    if (topTasks.isEmpty()) {
+      return tasks;
+    }
+    final List<FinishingTask> result = new ArrayList<>();
+    for (final FinishingTask task : tasks) {
+      if (!task.isCoalesce()) {
+        result.add(task);
+      } else {
+        final String key = task.makeCoalesceKey();
+        if (topTasks.get(key) == task) {
+          final int size = groupSizes.get(key);
+          if (size == 1) {
+            result.add(task);
+          } else {
+            result.add(task.asCoalesced());
+            this.logger.info(format("Coalesced %d identical finishing task(s) '%s' into project %s", size, task.getExecutionId(), task.getArtifactId()));
+          }
+        } else {
+          this.logger.debug("Coalesced finishing task: " + task);
         }
       }
-      this.logger.debug("mvn-finisher shutdown hook work completed");
     }
+    return result;
   }
 
-  private boolean isSkip(final MavenSession session, final MavenProject project) {
-    return parseBoolean(findProperty(session, project, PROPERTY_SKIP, "false"));
+  /**
+   * Group tasks of the same project and phase, tasks with different log settings are not batched because batch has single log.
+   */
+  private List<List<FinishingTask>> makeBatches(final List<FinishingTask> tasks) {
+    final Map<String, List<FinishingTask>> groups = new LinkedHashMap<>();
+    for (final FinishingTask task : tasks) {
+      final String groupKey = task.getProjectId() + '|' + task.getPhase()
+          + '|' + task.isSaveLog() + '|' + task.getLogFolder() + '|' + task.isGzipLog() + '|' + task.getLogTailLines();
+      final List<FinishingTask> group = groups.computeIfAbsent(groupKey, k -> new ArrayList<>());
+      if (group.stream().anyMatch(x -> x.getExecutionId().equals(task.getExecutionId()))) {
+        // execution id must be unique inside batch to recognize its result in output
+        groups.put(groupKey + '#' + groups.size(), Collections.singletonList(task));
+      } else {
+        group.add(task);
+      }
+    }
+    return new ArrayList<>(groups.values());
+  }
+
+  private Map<FinishingTask, FinishingTaskResult> executeBatch(final MavenSession session, final List<FinishingTask> batch) {
+    final Map<FinishingTask, FinishingTaskResult> results = new LinkedHashMap<>();
+    final FinishingTask first = batch.get(0);
+
+    List<FinishingTask> pending = new ArrayList<>(batch);
+    while (!pending.isEmpty()) {
+      final List<String> goals = new ArrayList<>();
+      pending.forEach(x -> goals.addAll(x.makeGoals()));
+      final String batchName = pending.stream().map(FinishingTask::getExecutionId).collect(Collectors.joining("+"));
+      // every task keeps its own time budget inside batch
+      final long timeoutSeconds = pending.stream().mapToLong(FinishingTask::getTimeoutSeconds).sum();
+      this.logger.debug(format("Finishing batch: %s %s %s", first.getProjectId(), first.getPhase(), goals));
+
+      final ForkedInvocation invocation = invokeMaven(session, first, goals, timeoutSeconds, batchName);
+      final int batchSize = pending.size();
+
+      final List<FinishingTask> notStarted = new ArrayList<>();
+      if (invocation.exception == null && invocation.exitCode == 0) {
+        pending.forEach(x -> results.put(x, invocation.makeResult(null, batchSize)));
+      } else {
+        // markers of executions out of the batch (forked lifecycles, mojo's own executions) are ignored
+        final Set<String> pendingIds = pending.stream().map(FinishingTask::getExecutionId).collect(Collectors.toSet());
+        final List<String> startedIds = new ArrayList<>();
+        String failedId = null;
+        for (final String line : invocation.markers) {
+          final Matcher startMatcher = MOJO_START_PATTERN.matcher(line);
+          if (startMatcher.find()) {
+            if (pendingIds.contains(startMatcher.group(1))) {
+              startedIds.add(startMatcher.group(1));
+            }
+          } else {
+            final Matcher failMatcher = MOJO_FAILED_PATTERN.matcher(line);
+            if (failMatcher.find() && pendingIds.contains(failMatcher.group(1))) {
+              failedId = failMatcher.group(1);
+            }
+          }
+        }
+        if (failedId == null && !startedIds.isEmpty()) {
+          failedId = startedIds.get(startedIds.size() - 1);
+        }
+        final Throwable error = invocation.exception == null
+            ? new MavenInvocationException("Exit code is " + invocation.exitCode)
+            : invocation.exception;
+        for (final FinishingTask task : pending) {
+          final String id = task.getExecutionId();
+          if (id.equals(failedId) || failedId == null) {
+            results.put(task, invocation.makeResult(error, batchSize));
+          } else if (startedIds.contains(id)) {
+            results.put(task, invocation.makeResult(null, batchSize));
+          } else {
+            notStarted.add(task);
+          }
+        }
+        if (notStarted.size() == pending.size()) {
+          // restart of the same batch can't make progress
+          notStarted.forEach(x -> results.put(x, invocation.makeResult(error, batchSize)));
+          notStarted.clear();
+        } else if (!notStarted.isEmpty()) {
+          this.logger.debug(format("Batch %s failed on '%s', %d task(s) will be restarted", batchName, failedId, notStarted.size()));
+        }
+      }
+      pending = notStarted;
+    }
+    return results;
   }
 
   @Override
   public void afterProjectsRead(final MavenSession session) throws MavenExecutionException {
-    if (isSkip(session, null)) {
+    final FinishingConfig config = FinishingConfig.ofSession(session);
+    final FinishingSettings settings = FinishingSettings.of(config, this.logger);
+    if (settings.isSkip()) {
       this.logger.debug("Skipping finisher");
     } else if (parseBoolean(session.getUserProperties().getProperty(FLAG_FINISHING_SESSION, "false"))) {
       this.logger.debug("Detected flag " + FLAG_FINISHING_SESSION);
     } else {
-      deleteFinishingFlagIfExist(session);
+      if (settings.isJournal()) {
+        // recovery executes tasks of killed build, it is not overhead of the extension
+        recoverJournal(session, settings);
+      }
+      final long start = System.nanoTime();
       this.logger.debug("registering session in afterProjectsRead: " + session);
-      this.nonProcessedMavenSessions.add(session);
-      this.sessionProjectMap.put(session, new ArrayList<>(session.getProjects()));
+      final FinishingPlan plan = makeFinishingPlan(session, config, settings);
+      final SessionRegistry.SessionState state = this.sessionRegistry.register(session, plan);
+      if (plan.isEmpty()) {
+        this.logger.debug("No finishing tasks declared in session projects");
+      } else {
+        //--classes needed by force finishing are loaded in background because during shutdown they can be not found
+        ShutdownClassPreloader.startIfNotStarted(this.logger);
+        if (settings.isPreresolve() && session.getRepositorySession() != null) {
+          final Map<Plugin, MavenProject> plugins = new IdentityHashMap<>();
+          for (final FinishingTask task : plan.getTasks()) {
+            final MavenProject project = session.getProjects().get(task.getProjectIndex());
+            final Plugin plugin = project.getPlugin(task.getPluginKey());
+            if (plugin != null) {
+              plugins.put(plugin, project);
+            }
+          }
+          state.setPreresolver(PluginPreresolver.start(this.repositorySystem, session.getRepositorySession(), plugins, this.logger));
+        }
+        if (settings.isJournal()) {
+          startJournal(session, state);
+        }
+        if (FinishingSettings.MODE_WORKER.equals(settings.getMode())) {
+          final WorkerPool workerPool = WorkerPool.makeForCurrentMaven(settings.getWorkers(), this.logger);
+          if (workerPool != null) {
+            state.setWorkerPool(workerPool);
+            try {
+              final FinishingTask task = plan.getTasks().get(0);
+              workerPool.prestart(findAddedEnvironment(new MavenCommandLineBuilder().build(
+                  makeInvocationRequest(session, task, task.makeGoals(), task.getTimeoutSeconds(), false))));
+            } catch (CommandLineConfigurationException ex) {
+              this.logger.debug("Finishing worker is not prestarted: " + ex.getMessage());
+            }
+          }
+        }
+      }
+      final long startupOverhead = (System.nanoTime() - start) / 1000000L;
+      state.setStartupOverhead(startupOverhead);
+      this.logger.debug(format("mvn-finisher startup overhead %d ms", startupOverhead));
     }
   }
 
+  FinishingPlan makeFinishingPlan(final MavenSession session, final FinishingConfig config, final FinishingSettings settings) {
+    final List<MavenProject> projects = session.getProjects();
+    final Map<MavenProject, Integer> projectIndexes = new IdentityHashMap<>();
+    final String[] projectIds = new String[projects.size()];
+    for (int i = 0; i < projectIds.length; i++) {
+      projectIndexes.put(projects.get(i), i);
+      projectIds[i] = projects.get(i).getId();
+    }
+
+    final ProjectDependencyGraph graph = session.getProjectDependencyGraph();
+    final BitSet[] downstreamProjects = new BitSet[projectIds.length];
+    final List<FinishingTask> tasks = new ArrayList<>();
+
+    for (int i = 0; i < projectIds.length; i++) {
+      final MavenProject project = projects.get(i);
+      final FinishingConfig projectConfig = config.withProject(project);
+      final File defaultLogFolder = new File(project.getBuild().getDirectory(), "mvn.finisher.logs");
+      final FinishingTaskSettings projectSettings = FinishingTaskSettings.of(projectConfig, defaultLogFolder, this.logger);
+      if (projectSettings.isSkip()) {
+        this.logger.debug("Detected skip finishing flag for project: " + project.getId());
+        continue;
+      }
+      boolean hasTasks = false;
+      for (final Plugin buildPlugin : project.getBuild().getPlugins()) {
+        for (final PluginExecution execution : buildPlugin.getExecutions()) {
+          if (ALL_FINISHING_PHASES.contains(execution.getPhase())) {
+            final FinishingConfig executionConfig = projectConfig.withExecution(execution);
+            final FinishingTaskSettings taskSettings = executionConfig == projectConfig
+                ? projectSettings
+                : FinishingTaskSettings.of(executionConfig, defaultLogFolder, this.logger);
+            if (taskSettings.isSkip()) {
+              this.logger.debug("Detected skip finishing flag for execution: " + execution.getId() + " (" + project.getId() + ')');
+              continue;
+            }
+            hasTasks = true;
+            tasks.add(new FinishingTask(
+                i,
+                projectIds[i],
+                project.getArtifactId(),
+                project.getFile(),
+                project.getBasedir(),
+                new File(project.getBuild().getDirectory()),
+                buildPlugin.getKey(),
+                buildPlugin.getId(),
+                execution.getId(),
+                execution.getGoals(),
+                execution.getPhase(),
+                makeEffectiveConfiguration(buildPlugin, execution),
+                taskSettings
+            ));
+          }
+        }
+      }
+      if (hasTasks && graph != null) {
+        final BitSet downstream = new BitSet(projectIds.length);
+        for (final MavenProject p : graph.getDownstreamProjects(project, true)) {
+          final Integer index = projectIndexes.get(p);
+          if (index != null) {
+            downstream.set(index);
+          }
+        }
+        downstreamProjects[i] = downstream;
+      }
+    }
+
+    tasks.sort((x, y) -> {
+      if (x.getPhase().equals(y.getPhase())) {
+        return 0;
+      }
+      if (FINISHING_PHASE.equals(x.getPhase()) || FINISHING_PHASE.equals(y.getPhase())) {
+        return FINISHING_PHASE.equals(x.getPhase()) ? 1 : -1;
+      }
+      return 0;
+    });
+
+    return new FinishingPlan(settings, tasks, projectIds, downstreamProjects);
+  }
+
+  /**
+   * Make text of execution configuration merged with plugin configuration, the same way as maven makes configuration of mojo execution.
+   */
+  private static String makeEffectiveConfiguration(final Plugin plugin, final PluginExecution execution) {
+    final Xpp3Dom pluginConfiguration = plugin.getConfiguration() instanceof Xpp3Dom ? (Xpp3Dom) plugin.getConfiguration() : null;
+    final Xpp3Dom executionConfiguration = execution.getConfiguration() instanceof Xpp3Dom ? (Xpp3Dom) execution.getConfiguration() : null;
+    final Xpp3Dom result;
+    if (executionConfiguration == null) {
+      result = pluginConfiguration;
+    } else if (pluginConfiguration == null) {
+      result = executionConfiguration;
+    } else {
+      // merge changes dominant configuration so that the model is not touched
+      result = Xpp3Dom.mergeXpp3Dom(new Xpp3Dom(executionConfiguration), pluginConfiguration);
+    }
+    return result == null ? "" : result.toString();
+  }
+
   private void finishSession(final MavenSession session, final boolean force) throws MavenExecutionException {
-    if (this.processingSessions.putIfAbsent(session, false) == null) {
+    final SessionRegistry.SessionState state = this.sessionRegistry.find(session);
+    if (state == null) {
+      this.logger.debug("Finishing plan is not found for session: " + session);
+    } else if (state.startProcessing()) {
+      FinishingLock finishingLock = null;
       try {
-        final List<MavenProject> sessionProjects = sessionProjectMap.get(session);
+        final FinishingPlan plan = state.getPlan();
+        final FinishingSettings settings = plan.getSettings();
 
-        if (tryLockFinishingOfSession(session)) {
-          if (isSkip(session, null)) {
-            this.logger.info("Skip finishing");
-            return;
-          }
+        // another session finishing the folder is waited limited time, in force mode only within force budget
+        final long lockWaitMs = settings.getLockWaitSeconds() * 1000L;
+        finishingLock = tryLockFinishingOfSession(session,
+            force ? Math.min(lockWaitMs, state.getForceDeadline() - System.currentTimeMillis()) : lockWaitMs);
+        final MavenExecutionResult sessionResult = session.getResult();
 
-          final MavenExecutionResult sessionResult = session.getResult();
+        final Map<String, MavenProject> sessionProjects = new HashMap<>();
+        for (final MavenProject project : session.getProjects()) {
+          sessionProjects.put(project.getId(), project);
+        }
 
-          final List<SingleFinishingTask> allFoundTasks = new ArrayList<>();
-          sessionProjects.forEach(project -> {
-            final BuildSummary projectBuildSummary = sessionResult.getBuildSummary(project);
-            if (projectBuildSummary == null && !force) {
-              this.logger.warn(format("Project '%s' is ignored because session was not created", project.getId()));
-              return;
-            }
-            if (isSkip(session, project)) {
-              this.logger.debug("Detected skip finishing flag for project: " + project.getId());
-              return;
-            }
-            for (final Plugin buildPlugin : project.getBuild().getPlugins()) {
-              for (final PluginExecution execution : buildPlugin.getExecutions()) {
-                if (ALL_FINISHING_PHASES.contains(execution.getPhase())) {
-                  final SingleFinishingTask task = new SingleFinishingTask(execution.getPhase(), project, buildPlugin, execution);
-                  this.logger.info("Found finishing task: " + task.execution.getId() + " (" + project.getArtifactId() + ')');
-                  allFoundTasks.add(task);
-                }
-              }
+        final Set<String> ignoredProjects = new HashSet<>();
+        final List<FinishingTask> allFoundTasks = new ArrayList<>();
+        for (final FinishingTask task : plan.getTasks()) {
+          final MavenProject project = sessionProjects.get(task.getProjectId());
+          final BuildSummary projectBuildSummary = project == null ? null : sessionResult.getBuildSummary(project);
+          if (projectBuildSummary == null && !force) {
+            if (ignoredProjects.add(task.getProjectId())) {
+              this.logger.warn(format("Project '%s' is ignored because session was not created", task.getProjectId()));
             }
-          });
+            continue;
+          }
+          this.logger.info("Found finishing task: " + task.getExecutionId() + " (" + task.getArtifactId() + ')');
+          allFoundTasks.add(task);
+        }
+
+        this.logger.info(String.format("Totally detected %d potential finishing task(s)", allFoundTasks.size()));
+
+        final String LINE = "------------------------------------------------------------------------";
 
-          this.logger.info(String.format("Totally detected %d potential finishing task(s)", allFoundTasks.size()));
+        if (!allFoundTasks.isEmpty()) {
+          this.logger.info(LINE);
+          if (force) {
+            this.logger.warn("START FORCE FINISHING");
+          } else {
+            this.logger.info("START FINISHING");
+          }
+          this.logger.info(LINE);
 
-          allFoundTasks.sort((x, y) -> {
-            if (x.phase.equals(y.phase)) {
-              return 0;
+          final boolean inProcess = !force && FinishingSettings.MODE_INPROCESS.equals(settings.getMode());
+          if (inProcess) {
+            this.logger.debug("Finishing tasks will be executed in the current process");
+            if (allFoundTasks.stream().anyMatch(FinishingTask::isSaveLog)) {
+              // mojos executed in the current process write into the log of the session
+              this.logger.warn("Finishing tasks executed in the current process don't save logs, "
+                  + FinishingConfig.PROPERTY_SAVE_LOG + " and " + FinishingConfig.PROPERTY_SAVE_LOG_FOLDER + " are ignored");
             }
-            return FINISHING_PHASE.equals(x.phase) ? 1 : -1;
-          });
+          }
 
-          final String LINE = "------------------------------------------------------------------------";
+          final FinishingCache cache = new FinishingCache(this.logger);
+          final Map<FinishingTask, String> fingerprints = new HashMap<>();
+          final List<FinishingTask> skippedTasks = new ArrayList<>();
+          final List<FinishingTask> allowedTasks = new ArrayList<>();
+          final List<FinishingTask> asyncTasks = new ArrayList<>();
+          for (final FinishingTask task : allFoundTasks) {
+            final MavenProject project = sessionProjects.get(task.getProjectId());
+            final BuildSummary buildSummary = project == null ? null : sessionResult.getBuildSummary(project);
 
-          if (!allFoundTasks.isEmpty()) {
-            this.logger.info(LINE);
-            if (force) {
-              this.logger.warn("START FORCE FINISHING");
+            final boolean executionAllowed;
+
+            if (buildSummary instanceof BuildSuccess) {
+              executionAllowed = OK_FINISHING_PHASES.contains(task.getPhase());
+            } else if (buildSummary instanceof BuildFailure) {
+              executionAllowed = ERROR_FINISHING_PHASES.contains(task.getPhase());
             } else {
-              this.logger.info("START FINISHING");
+              if (buildSummary != null) {
+                this.logger.warn("Detected unexpected BuildSummary object type for project: " + buildSummary.getClass().getSimpleName());
+              }
+              if (force) {
+                executionAllowed = FORCE_FINISHING_PHASES.contains(task.getPhase());
+              } else {
+                executionAllowed = false;
+              }
             }
-            this.logger.info(LINE);
 
-            int calledTaskCount = 0;
-            int errorTaskCount = 0;
+            if (!executionAllowed) {
+              this.logger.debug("Ignored finishing task: " + task);
+            } else if (FINISHING_PHASE_ASYNC.equals(task.getPhase())) {
+              this.logger.debug("Detected async finishing task: " + task);
+              asyncTasks.add(task);
+            } else if (!force && task.isCache() && isUnchangedTask(task, buildSummary, cache, fingerprints)) {
+              this.logger.info("Skipped unchanged finishing task: " + task.getExecutionId() + " (" + task.getArtifactId() + ')');
+              skippedTasks.add(task);
+            } else {
+              this.logger.debug("Detected finishing task: " + task);
+              allowedTasks.add(task);
+            }
+          }
 
-            boolean hasError = false;
-            for (final SingleFinishingTask task : allFoundTasks) {
-              final BuildSummary buildSummary = sessionResult.getBuildSummary(task.project);
+          if (!asyncTasks.isEmpty()) {
+            startAsyncFinishing(session, asyncTasks);
+          }
 
-              final boolean executionAllowed;
+          final List<FinishingTask> tasksToExecute = coalesce(allowedTasks);
 
-              if (buildSummary instanceof BuildSuccess) {
-                executionAllowed = OK_FINISHING_PHASES.contains(task.phase);
-              } else if (buildSummary instanceof BuildFailure) {
-                executionAllowed = ERROR_FINISHING_PHASES.contains(task.phase);
-              } else {
-                if (buildSummary != null) {
-                  this.logger.warn("Detected unexpected BuildSummary object type for project: " + buildSummary.getClass().getSimpleName());
-                }
-                if (force) {
-                  executionAllowed = FORCE_FINISHING_PHASES.contains(task.phase);
-                } else {
-                  executionAllowed = false;
-                }
+          final List<List<FinishingTask>> executionUnits;
+          if (!inProcess && settings.isBatch()) {
+            executionUnits = makeBatches(tasksToExecute);
+          } else {
+            executionUnits = new ArrayList<>();
+            tasksToExecute.forEach(x -> executionUnits.add(Collections.singletonList(x)));
+          }
+
+          if (force) {
+            // during force finishing time is limited so that the most specific tasks of the latest projects are started first
+            executionUnits.sort((x, y) -> {
+              final boolean xForce = FINISHING_PHASE_FORCE.equals(x.get(0).getPhase());
+              final boolean yForce = FINISHING_PHASE_FORCE.equals(y.get(0).getPhase());
+              if (xForce != yForce) {
+                return xForce ? -1 : 1;
               }
+              return Integer.compare(y.get(0).getProjectIndex(), x.get(0).getProjectIndex());
+            });
+          }
 
-              if (executionAllowed) {
-                this.logger.debug("Detected finishing task: " + task);
-                final MavenExecutionResult taskResult = task.execute(session);
-                calledTaskCount++;
-                if (taskResult.hasExceptions()) {
-                  errorTaskCount++;
-                  this.logger.error("Error during finishing task: " + task);
-                  for (final Throwable e : taskResult.getExceptions()) {
-                    this.logger.debug("DETECTED ERROR: " + e.getMessage(), e);
+          if (settings.isLive() && !inProcess) {
+            state.setLiveConsole(new LiveConsole(this.logger, settings.getLiveRate()));
+          }
+
+          final List<FinishingListener> listeners = findListeners();
+          final long finishingStartTime = System.currentTimeMillis();
+          final int threads;
+          if (force) {
+            threads = settings.getForceThreads();
+          } else if (inProcess) {
+            // many mojos are not thread safe and in-process tasks share the same container
+            if (settings.getThreads() > 1) {
+              this.logger.warn("Finishing tasks in the current process are executed in single thread, " + FinishingConfig.PROPERTY_THREADS + " is ignored");
+            }
+            threads = 1;
+          } else {
+            threads = settings.getThreads();
+          }
+          if (threads > 1 && executionUnits.size() > 1) {
+            this.logger.debug(format("Finishing units will be executed in %d thread(s)", threads));
+          }
+          // the same order of dependent units is used for any number of threads
+          final Map<List<FinishingTask>, Map<FinishingTask, FinishingTaskResult>> executedUnits;
+          try {
+            executedUnits = FinishingScheduler.execute(threads, executionUnits,
+                (unit, other) -> {
+                  final FinishingTask unitTask = unit.get(0);
+                  final FinishingTask otherTask = other.get(0);
+                  final boolean unitGeneral = FINISHING_PHASE.equals(unitTask.getPhase());
+                  final boolean otherGeneral = FINISHING_PHASE.equals(otherTask.getPhase());
+                  if (unitGeneral != otherGeneral) {
+                    return unitGeneral;
                   }
-                  hasError = true;
+                  if (unitTask.getProjectIndex() == otherTask.getProjectIndex()) {
+                    return executionUnits.indexOf(other) < executionUnits.indexOf(unit);
+                  }
+                  return plan.isDownstream(unitTask.getProjectIndex(), otherTask.getProjectIndex());
+                },
+                unit -> executeUnit(session, sessionProjects, unit, inProcess, listeners, finishingStartTime));
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MavenExecutionException("Interrupted during finishing", ex);
+          }
+
+          final long finishingTime = System.currentTimeMillis() - finishingStartTime;
+
+          int calledTaskCount = 0;
+          int errorTaskCount = 0;
+
+          boolean hasError = false;
+          final List<FinishingTaskMetrics> taskMetrics = new ArrayList<>();
+          for (final Map<FinishingTask, FinishingTaskResult> unitResults : executedUnits.values()) {
+            for (final Map.Entry<FinishingTask, FinishingTaskResult> e : unitResults.entrySet()) {
+              final FinishingTask task = e.getKey();
+              final FinishingTaskResult taskResult = e.getValue();
+              taskMetrics.add(new FinishingTaskMetrics(task, taskResult, finishingStartTime));
+              calledTaskCount++;
+              final String fingerprint = fingerprints.get(task);
+              if (fingerprint != null) {
+                if (taskResult.isError()) {
+                  cache.remove(task);
                 } else {
-                  this.logger.debug("Finishing task completed: " + task);
+                  cache.put(task, fingerprint);
                 }
+              }
+              if (taskResult.isError()) {
+                errorTaskCount++;
+                this.logger.error("Error during finishing task: " + task);
+                this.logger.debug("DETECTED ERROR: " + taskResult.getError().getMessage(), taskResult.getError());
+                hasError = true;
               } else {
-                this.logger.debug("Ignored finishing task: " + task);
+                this.logger.debug("Finishing task completed: " + task);
               }
             }
+          }
 
-            if (hasError) {
-              this.logger.error(LINE);
-              this.logger.error(format("FINISHING COMPLETED WITH ERRORS, executed %d task(s), %d error(s)", calledTaskCount, errorTaskCount));
-              this.logger.error(LINE);
-            } else {
-              this.logger.info(LINE);
-              this.logger.info(format("FINISHING COMPLETED SUCCESSFULLY, executed %d task(s) ", calledTaskCount));
-              this.logger.info(LINE);
+          cache.save();
+
+          final FinishingSessionMetrics sessionMetrics = new FinishingSessionMetrics(force, finishingStartTime, finishingTime, state.getStartupOverhead(), taskMetrics,
+              skippedTasks.stream().map(FinishingTaskMetrics::skipped).collect(Collectors.toList()));
+          final File reportFile = findReportFile(session, settings);
+          if (reportFile != null) {
+            try {
+              FinishingReportWriter.write(reportFile, sessionMetrics);
+              this.logger.info("Finishing report saved as " + reportFile);
+            } catch (IOException ex) {
+              this.logger.error("Can't write finishing report " + reportFile, ex);
             }
           }
-        } else {
-          this.logger.debug("Looks like that finishing already started for session: " + session);
+          for (final FinishingListener listener : listeners) {
+            try {
+              listener.onSessionFinished(sessionMetrics);
+            } catch (Exception ex) {
+              this.logger.error("Error in finishing listener " + listener.getClass().getName(), ex);
+            }
+          }
+
+          if (hasError) {
+            this.logger.error(LINE);
+            this.logger.error(format("FINISHING COMPLETED WITH ERRORS, executed %d task(s), %d error(s), skipped %d unchanged task(s), %d ms", calledTaskCount, errorTaskCount, skippedTasks.size(), finishingTime));
+            this.logger.error(LINE);
+          } else {
+            this.logger.info(LINE);
+            this.logger.info(format("FINISHING COMPLETED SUCCESSFULLY, executed %d task(s), skipped %d unchanged task(s), %d ms", calledTaskCount, skippedTasks.size(), finishingTime));
+            this.logger.info(LINE);
+          }
         }
       } finally {
-        this.processingSessions.put(session, true);
+        // all resources of the session are released so that nothing is kept in long living JVM
+        this.sessionRegistry.release(session);
+        if (finishingLock != null) {
+          releaseFinishingLock(finishingLock);
+        }
       }
     }
   }
 
+  private boolean isUnchangedTask(
+      final FinishingTask task,
+      final BuildSummary buildSummary,
+      final FinishingCache cache,
+      final Map<FinishingTask, String> fingerprints
+  ) {
+    final String fingerprint;
+    try {
+      fingerprint = FinishingCache.makeFingerprint(task, buildSummary == null ? "none" : buildSummary.getClass().getSimpleName());
+    } catch (IOException ex) {
+      this.logger.warn("Can't calculate fingerprint of finishing task " + task.getExecutionId() + ": " + ex.getMessage());
+      return false;
+    }
+    if (cache.isUnchanged(task, fingerprint)) {
+      return true;
+    }
+    fingerprints.put(task, fingerprint);
+    return false;
+  }
+
   @Override
   public void afterSessionEnd(final MavenSession session) throws MavenExecutionException {
-    if (isSkip(session, null)) {
-      this.logger.debug("skipped");
-    } else if (parseBoolean(session.getUserProperties().getProperty(FLAG_FINISHING_SESSION, "false"))) {
+    if (parseBoolean(session.getUserProperties().getProperty(FLAG_FINISHING_SESSION, "false"))) {
       this.logger.debug("Detected flag " + FLAG_FINISHING_SESSION + ", ignoring afterSessionEnd");
+    } else if (this.sessionRegistry.find(session) == null) {
+      this.logger.debug("skipped");
+    } else if (isCancelled(session)) {
+      this.logger.warn("Detected cancelled session, force finishing: " + session);
+      // interrupted flag is cleared during finishing to allow wait for started processes
+      final boolean interrupted = Thread.interrupted();
+      try {
+        final SessionRegistry.SessionState state = this.sessionRegistry.find(session);
+        final int budget = state == null ? FinishingSettings.DEFAULT_FORCE_BUDGET_SECONDS : state.getPlan().getSettings().getForceBudgetSeconds();
+        forceFinishSession(session, System.currentTimeMillis() + budget * 1000L);
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
     } else {
       this.logger.debug("afterSessionEnd: " + session);
-      this.nonProcessedMavenSessions.remove(session);
       finishSession(session, false);
     }
   }
 
-  private final class SingleFinishingTask {
-    private final MavenProject project;
-    private final Plugin plugin;
-    private final PluginExecution execution;
-    private final String phase;
-
-    private SingleFinishingTask(final String phase, final MavenProject project, final Plugin plugin, final PluginExecution execution) {
-      this.phase = phase;
-      this.project = project;
-      this.plugin = plugin;
-      this.execution = execution;
+  InvocationRequest makeInvocationRequest(
+      final MavenSession session,
+      final FinishingTask task,
+      final List<String> goals,
+      final int timeoutSeconds,
+      final boolean offline
+  ) {
+    final InvocationRequest request = new DefaultInvocationRequest();
+    request.setUpdateSnapshots(session.getRequest().isUpdateSnapshots());
+    request.setProfiles(session.getSettings().getActiveProfiles());
+    request.setAlsoMake(false);
+    request.setAlsoMakeDependents(false);
+    request.setBatchMode(true);
+    request.setThreads("1");
+    request.setOffline(session.isOffline() || offline);
+    final MavenExecutionRequest sessionRequest = session.getRequest();
+    if (sessionRequest.getLocalRepositoryPath() != null) {
+      request.setLocalRepositoryDirectory(sessionRequest.getLocalRepositoryPath());
     }
-
-    @Override
-    public String toString() {
-      return format("Finishing task(%s, %s, %s, %s, %s)", this.project.getFile(), this.phase, this.project.getId(), this.plugin.getId(), this.execution.getId());
+    if (sessionRequest.getUserSettingsFile() != null && sessionRequest.getUserSettingsFile().isFile()) {
+      request.setUserSettingsFile(sessionRequest.getUserSettingsFile());
     }
+    if (sessionRequest.getGlobalSettingsFile() != null && sessionRequest.getGlobalSettingsFile().isFile()) {
+      request.setGlobalSettingsFile(sessionRequest.getGlobalSettingsFile());
+    }
+    request.setShellEnvironmentInherited(true);
+    request.setPomFile(task.getPomFile());
+    // coalesced task must not be executed for modules of its project because they have their own copies of the task
+    request.setRecursive(!task.isCoalesced());
+    request.setBaseDirectory(task.getBaseDir());
 
-    private void logToFile(
-        final MavenSession session,
-        final MavenProject project,
-        final String finishTaskName,
-        final List<String> out,
-        final List<String> err
-    ) {
-      final boolean saveLog = parseBoolean(findProperty(session, project, PROPERTY_SAVE_LOG, "false"));
+    final Properties properties = new Properties();
+    properties.putAll(session.getUserProperties());
+    properties.put(FLAG_FINISHING_SESSION, "true");
+    request.setProperties(properties);
+    request.setTimeoutInSeconds(timeoutSeconds);
 
-      if (saveLog) {
-        final String saveLogFolder = findProperty(session, project, PROPERTY_SAVE_LOG_FOLDER, project.getBuild().getDirectory() + File.separatorChar + "mvn.finisher.logs");
+    request.setDebug(this.logger.isDebugEnabled());
 
-        final File outputFolder = new File(saveLogFolder);
-        if (!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
-          logger.error("Can't create log folder: " + outputFolder);
-          return;
-        }
+    this.logger.debug("Prepared goals: " + goals);
+    request.setGoals(goals);
+    return request;
+  }
 
-        logger.debug("Log will be saved at " + outputFolder);
-        final StringBuilder buffer = new StringBuilder();
+  private ForkedInvocation invokeMaven(
+      final MavenSession session,
+      final FinishingTask task,
+      final List<String> goals,
+      final long taskTimeoutSeconds,
+      final String finishTaskName
+  ) {
+    final String projectId = task.getProjectId();
+    this.logger.debug(String.format("invoking maven for project %s pom file is %s",
+        projectId,
+        task.getPomFile()));
 
-        for (final String s : out) {
-          buffer.append('\n').append(s);
-        }
+    final SessionRegistry.SessionState state = this.sessionRegistry.find(session);
+    final boolean forceMode = isShutdownActive() || state != null && state.isForce();
 
-        if (!err.isEmpty()) {
-          buffer.append("\n[ERROR OUT]----------------------").append('\n');
-          for (final String s : err) {
-            buffer.append('\n').append(s);
-          }
-        }
+    // kill of timed out process in force mode must not exceed force finishing budget
+    final long deadline = forceMode && state != null ? state.getForceDeadline() : Long.MAX_VALUE;
+    long timeoutMs = taskTimeoutSeconds * 1000L;
+    if (forceMode && state != null) {
+      timeoutMs = Math.min(timeoutMs, deadline - System.currentTimeMillis());
+    }
+    final int timeoutSeconds = (int) Math.min(Integer.MAX_VALUE, Math.max(1L, (timeoutMs + 999L) / 1000L));
+    final boolean offline = isOfflineFinishing(session);
+    final InvocationRequest request = makeInvocationRequest(session, task, goals, timeoutSeconds, offline);
 
-        final File logFile = new File(outputFolder,
-            String.format("%s_%s.log",
-                project.getArtifactId(),
-                finishTaskName));
-        try (final OutputStream outStream = new BufferedOutputStream(new FileOutputStream(logFile, false))) {
-          outStream.write(buffer.toString().getBytes(StandardCharsets.UTF_8));
-          outStream.flush();
-          logger.info(String.format("Finisher log for '%s' saved as '%s'", finishTaskName, logFile.getName()));
-        } catch (final IOException ex) {
-          logger.error("Can't save finish task log into " + logFile, ex);
+    this.logger.debug(format("Finishing:  %s %s%s", projectId, goals, request.isOffline() ? " (offline)" : ""));
+
+    final long startTime = System.currentTimeMillis();
+
+    final TaskOutputCollector collector = new TaskOutputCollector(task.getLogTailLines(),
+        line -> MOJO_START_PATTERN.matcher(line).find() || MOJO_FAILED_PATTERN.matcher(line).find());
+    final LiveConsole liveConsole = state == null ? null : state.getLiveConsole();
+    if (liveConsole != null) {
+      collector.setLiveChannel(liveConsole.openChannel(format("[%s:%s] ", task.getArtifactId(), finishTaskName)));
+    }
+
+    File logFile = null;
+    if (task.isSaveLog()) {
+      final File outputFolder = task.getLogFolder();
+      if (outputFolder.isDirectory() || outputFolder.mkdirs()) {
+        this.logger.debug("Log will be saved at " + outputFolder);
+        logFile = new File(outputFolder,
+            String.format("%s_%s.log%s",
+                task.getArtifactId(),
+                finishTaskName,
+                task.isGzipLog() ? ".gz" : ""));
+        try {
+          collector.openLog(logFile, task.isGzipLog());
+        } catch (IOException ex) {
+          this.logger.error("Can't open finish task log file " + logFile, ex);
+          logFile = null;
         }
+      } else {
+        this.logger.error("Can't create log folder: " + outputFolder);
       }
     }
 
-    private int findFinishTaskTimeoutSeconds(final MavenSession session, final MavenProject project) {
-      final String timeout = findProperty(session, project, PROPERTY_TASK_TIMEOUT, Integer.toString(MAX_FINISH_TASK_ALLOWED_TIME_SECONDS));
-      int result;
-      try {
-        result = Integer.parseInt(timeout.trim());
-        if (result <= 0) {
-          throw new NumberFormatException("Illegal value");
+    if (timeoutMs <= 0L) {
+      this.logger.error(format("Finish task '%s' is not started because force finishing budget is exhausted", finishTaskName));
+      closeLog(collector, logFile, finishTaskName);
+      return new ForkedInvocation(-1, System.currentTimeMillis(), collector,
+          new CommandLineTimeOutException("Force finishing budget is exhausted", null));
+    }
+
+    final WorkerPool workerPool = forceMode || state == null ? null : state.getWorkerPool();
+    int exitCode = -1;
+    try {
+      boolean executed = false;
+      if (workerPool != null) {
+        final Commandline commandline = new MavenCommandLineBuilder().build(request);
+        try {
+          exitCode = workerPool.execute(commandline.getWorkingDirectory(), commandline.getArguments(), findAddedEnvironment(commandline), timeoutMs, collector);
+          executed = true;
+        } catch (IOException ex) {
+          this.logger.warn("Can't execute finishing task in worker, forked maven will be used: " + ex.getMessage());
         }
-      } catch (NumberFormatException ex) {
-        logger.error(String.format("Detected illegal value '%s' for '%s', default %d seconds in use",
-            timeout,
-            PROPERTY_TASK_TIMEOUT,
-            MAX_FINISH_TASK_ALLOWED_TIME_SECONDS
-        ));
-        result = MAX_FINISH_TASK_ALLOWED_TIME_SECONDS;
       }
+      final FinishingSettings settings = state == null ? null : state.getPlan().getSettings();
+      if (!executed && settings != null && FinishingSettings.LAUNCHER_FAST.equals(settings.getLauncher())) {
+        try {
+          exitCode = FastStartLauncher.run(new MavenCommandLineBuilder().build(request), task.getBaseDir(),
+              session.getRequest().getLocalRepositoryPath(), settings.getLauncherHeap(), collector, timeoutMs, deadline);
+          executed = true;
+        } catch (IOException ex) {
+          this.logger.warn("Can't start maven through fast launcher, invoker will be used: " + ex.getMessage());
+        }
+      }
+      if (!executed) {
+        exitCode = ProcessRunner.run(new MavenCommandLineBuilder().build(request), collector, timeoutMs, deadline);
+      }
+    } catch (Exception ex) {
+      if (ex instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      if (ex instanceof CommandLineTimeOutException) {
+        this.logger.error(String.format("Finish task interrupted because longer than %d seconds!", timeoutSeconds));
+      } else {
+        this.logger.error("Can't invoke maven", ex);
+      }
+      closeLog(collector, logFile, finishTaskName);
+      return new ForkedInvocation(-1, startTime, collector, ex);
+    }
+
+    final ForkedInvocation result = new ForkedInvocation(exitCode, startTime, collector, null);
+
+    closeLog(collector, logFile, finishTaskName);
+
+    if (collector.isLive()) {
+      // lines have been already printed
       return result;
     }
 
-    private MavenExecutionResult execute(final MavenSession session) {
-      final String projectId = project.getGroupId() + ':' + project.getArtifactId();
-      logger.debug(String.format("executing %s for project %s pom file is %s",
-          SingleFinishingTask.class.getSimpleName(),
-          projectId,
-          project.getFile()));
-
-      final InvocationRequest request = new DefaultInvocationRequest();
-      request.setUpdateSnapshots(session.getRequest().isUpdateSnapshots());
-      request.setProfiles(session.getSettings().getActiveProfiles());
-      request.setAlsoMake(false);
-      request.setAlsoMakeDependents(false);
-      request.setBatchMode(true);
-      request.setThreads("1");
-      request.setOffline(session.isOffline());
-      request.setShellEnvironmentInherited(true);
-      request.setPomFile(project.getFile());
-      request.setRecursive(true);
-      request.setBaseDirectory(project.getBasedir());
-
-      final Properties properties = new Properties();
-      properties.putAll(session.getUserProperties());
-      properties.put(FLAG_FINISHING_SESSION, "true");
-      request.setProperties(properties);
-      request.setTimeoutInSeconds(findFinishTaskTimeoutSeconds(session, project));
-
-      request.setDebug(logger.isDebugEnabled());
+    final long skippedOutput = collector.getOutputLines() - collector.getOutputTail().size();
+    if (skippedOutput > 0) {
+      this.logger.debug(format("FINISH.OUT> ... %d line(s) skipped", skippedOutput));
+    }
+    for (final String s : collector.getOutputTail()) {
+      this.logger.debug("FINISH.OUT> " + s);
+    }
 
-      final List<String> goals = new ArrayList<>();
-      for (final String g : this.execution.getGoals()) {
-        goals.add(this.plugin.getKey() + ':' + g + '@' + this.execution.getId());
+    final long skippedError = collector.getErrorLines() - collector.getErrorTail().size();
+    if (exitCode == 0) {
+      if (skippedError > 0) {
+        this.logger.debug(format("FINISH.ERR> ... %d line(s) skipped", skippedError));
+      }
+      for (final String s : collector.getErrorTail()) {
+        this.logger.debug("FINISH.ERR> " + s);
       }
-      logger.debug("Prepared goals: " + goals);
-      request.setGoals(goals);
+    } else {
+      if (skippedError > 0) {
+        this.logger.error(format("... %d line(s) skipped", skippedError));
+      }
+      for (final String s : collector.getErrorTail()) {
+        this.logger.error(s);
+      }
+    }
+    return result;
+  }
 
-      logger.debug(format("Finishing:  %s %s", projectId, goals));
+  private void closeLog(final TaskOutputCollector collector, final File logFile, final String finishTaskName) {
+    collector.close();
+    if (logFile != null) {
+      if (collector.getLogError() == null) {
+        this.logger.info(String.format("Finisher log for '%s' saved as '%s'", finishTaskName, logFile.getName()));
+      } else {
+        this.logger.error("Can't save finish task log into " + logFile, collector.getLogError());
+      }
+    }
+  }
 
-      final long startTime = System.currentTimeMillis();
+  private static final class ForkedInvocation {
+    private final int exitCode;
+    private final long startTime;
+    private final long time;
+    private final long launchTime;
+    private final long outputLines;
+    private final long outputBytes;
+    private final List<String> markers;
+    private final Exception exception;
 
-      final MavenExecutionResult result = new DefaultMavenExecutionResult();
-      result.setProject(project);
+    private ForkedInvocation(final int exitCode, final long startTime, final TaskOutputCollector collector, final Exception exception) {
+      this.exitCode = exitCode;
+      this.startTime = startTime;
+      this.time = System.currentTimeMillis() - startTime;
+      this.launchTime = collector.getFirstLineTime() == 0L ? 0L : collector.getFirstLineTime() - startTime;
+      this.outputLines = collector.getOutputLines() + collector.getErrorLines();
+      this.outputBytes = collector.getBytes();
+      this.markers = collector.getMarkers();
+      this.exception = exception;
+    }
 
-      final Invoker invoker = new DefaultInvoker();
-      final List<String> outputList = new CopyOnWriteArrayList<>();
-      final List<String> errList = new CopyOnWriteArrayList<>();
-      invoker.setOutputHandler(outputList::add);
-      invoker.setErrorHandler(errList::add);
-      final InvocationResult invokeResult;
-      try {
-        invokeResult = invoker.execute(request);
-        final CommandLineException cliException = invokeResult.getExecutionException();
-        if (cliException != null) {
-          throw cliException;
-        }
-      } catch (Exception ex) {
-        if (ex instanceof CommandLineTimeOutException) {
-          logger.error(String.format("Finish task interrupted because longer than %d seconds!", MAX_FINISH_TASK_ALLOWED_TIME_SECONDS));
-        } else {
-          logger.error("Can't invoke maven", ex);
-        }
-        result.addBuildSummary(new BuildFailure(project, System.currentTimeMillis() - startTime, ex));
-        return result;
-      }
-      final int exitCode = invokeResult.getExitCode();
+    private FinishingTaskResult makeResult(final Throwable error) {
+      return this.makeResult(error, 1);
+    }
 
-      final long time = System.currentTimeMillis() - startTime;
+    private FinishingTaskResult makeResult(final Throwable error, final int batchSize) {
+      return new FinishingTaskResult(this.startTime, this.time, this.launchTime, this.exitCode,
+          this.outputLines, this.outputBytes, this.exception instanceof CommandLineTimeOutException, batchSize, error);
+    }
+  }
 
-      logToFile(session, this.project, this.execution.getId(), outputList, errList);
+  private FinishingTaskResult executeInProcess(final MavenSession session, final MavenProject project, final FinishingTask task) {
+    this.logger.debug(format("Finishing in process:  %s %s@%s", task.getProjectId(), task.getPluginKey(), task.getExecutionId()));
 
-      for (final String s : outputList) {
-        logger.debug("FINISH.OUT> " + s);
+    final long startTime = System.currentTimeMillis();
+
+    try {
+      if (project == null) {
+        throw new IllegalStateException("Can't find project in session: " + task.getProjectId());
       }
+      final Plugin plugin = project.getPlugin(task.getPluginKey());
+      if (plugin == null) {
+        throw new IllegalStateException("Can't find plugin in project: " + task.getPluginKey());
+      }
+
+      // mojos are executed in the calling thread which is inside session scope of maven, the watchdog interrupts them by timeout
+      // and the task is completed only after return of the mojo so that nothing of the task keeps working in background
+      final Thread caller = Thread.currentThread();
+      final AtomicBoolean completed = new AtomicBoolean();
+      final AtomicBoolean timedOut = new AtomicBoolean();
+      final Thread watchdog = new Thread(() -> {
+        try {
+          Thread.sleep(task.getTimeoutSeconds() * 1000L);
+        } catch (InterruptedException ex) {
+          return;
+        }
+        synchronized (completed) {
+          if (!completed.get()) {
+            timedOut.set(true);
+            this.logger.error(String.format("Finish task interrupted because longer than %d seconds!", task.getTimeoutSeconds()));
+            caller.interrupt();
+          }
+        }
+      }, "mvn-finisher-inprocess-watchdog");
+      watchdog.setDaemon(true);
 
-      if (exitCode == 0) {
-        for (final String s : errList) {
-          logger.debug("FINISH.ERR> " + s);
+      final MavenProject currentProject = session.getCurrentProject();
+      session.setCurrentProject(project);
+      watchdog.start();
+      Exception error = null;
+      try {
+        for (final String goal : task.getGoals()) {
+          final MojoExecution mojoExecution = new MojoExecution(plugin, goal, task.getExecutionId());
+          this.executionPlanCalculator.setupMojoExecution(session, project, mojoExecution);
+          this.logger.debug("Executing mojo: " + mojoExecution);
+          this.pluginManager.executeMojo(session, mojoExecution);
+          if (timedOut.get()) {
+            break;
+          }
         }
-        result.addBuildSummary(new BuildSuccess(project, time));
-      } else {
-        for (final String s : errList) {
-          logger.error(s);
+      } catch (Exception ex) {
+        error = ex;
+      } finally {
+        synchronized (completed) {
+          completed.set(true);
+        }
+        watchdog.interrupt();
+        session.setCurrentProject(currentProject);
+        if (timedOut.get()) {
+          // interruption made by the watchdog must not affect next tasks
+          Thread.interrupted();
         }
-        result.addBuildSummary(new BuildFailure(project, time, new MavenInvocationException("Exit code is " + exitCode)));
       }
-      return result;
+      if (timedOut.get()) {
+        return new FinishingTaskResult(startTime, System.currentTimeMillis() - startTime,
+            new CommandLineTimeOutException("Finishing task is longer than " + task.getTimeoutSeconds() + " seconds", error));
+      }
+      if (error != null) {
+        throw error;
+      }
+    } catch (Exception ex) {
+      this.logger.error(String.format("Can't execute finishing task %s in process: %s", task.getExecutionId(), ex.getMessage()));
+      return new FinishingTaskResult(startTime, System.currentTimeMillis() - startTime, ex);
+    }
+
+    return new FinishingTaskResult(startTime, System.currentTimeMillis() - startTime, null);
+  }
+
+  private FinishingTaskResult executeForked(final MavenSession session, final FinishingTask task) {
+    final ForkedInvocation invocation = invokeMaven(session, task, task.makeGoals(), task.getTimeoutSeconds(), task.getExecutionId());
+    if (invocation.exception != null) {
+      return invocation.makeResult(invocation.exception);
     }
+    return invocation.makeResult(invocation.exitCode == 0 ? null : new MavenInvocationException("Exit code is " + invocation.exitCode));
   }
 
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.util.filter.ScopeDependencyFilter;
+
+/**
+ * Resolves artifacts of finishing plugins and their dependencies in background thread, so that external maven processes of finishing can be started offline.
+ */
+final class PluginPreresolver {
+
+  private static final String THREAD_NAME = "mvn-finisher-plugin-resolver";
+
+  private final Map<String, CollectRequest> requests;
+  private final CountDownLatch completed = new CountDownLatch(1);
+  private volatile boolean allResolved;
+
+  private PluginPreresolver(final Map<String, CollectRequest> requests) {
+    this.requests = requests;
+  }
+
+  /**
+   * Make collect request for plugin of project.
+   *
+   * @return request or null if plugin version is not defined
+   */
+  private static CollectRequest makeRequest(final MavenProject project, final Plugin plugin) {
+    if (plugin.getVersion() == null) {
+      return null;
+    }
+    final CollectRequest request = new CollectRequest();
+    request.setRoot(new org.eclipse.aether.graph.Dependency(
+        new DefaultArtifact(plugin.getGroupId(), plugin.getArtifactId(), "jar", plugin.getVersion()), "runtime"));
+    for (final Dependency dependency : plugin.getDependencies()) {
+      final List<org.eclipse.aether.graph.Exclusion> exclusions = new ArrayList<>();
+      for (final Exclusion exclusion : dependency.getExclusions()) {
+        exclusions.add(new org.eclipse.aether.graph.Exclusion(exclusion.getGroupId(), exclusion.getArtifactId(), "*", "*"));
+      }
+      final Artifact artifact = new DefaultArtifact(
+          dependency.getGroupId(),
+          dependency.getArtifactId(),
+          dependency.getClassifier(),
+          dependency.getType() == null ? "jar" : dependency.getType(),
+          dependency.getVersion());
+      request.addDependency(new org.eclipse.aether.graph.Dependency(artifact, "runtime", dependency.isOptional(), exclusions));
+    }
+    final List<RemoteRepository> repositories = project.getRemotePluginRepositories();
+    request.setRepositories(repositories == null ? Collections.emptyList() : repositories);
+    return request;
+  }
+
+  /**
+   * Start resolution of plugins.
+   *
+   * @param plugins plugins with their projects, plugins with the same key can be in different projects so that map must be identity one
+   * @return started resolver
+   */
+  static PluginPreresolver start(
+      final RepositorySystem repositorySystem,
+      final RepositorySystemSession repositorySession,
+      final Map<Plugin, MavenProject> plugins,
+      final Logger logger
+  ) {
+    final Map<String, CollectRequest> requests = new LinkedHashMap<>();
+    boolean allRequested = true;
+    for (final Map.Entry<Plugin, MavenProject> e : plugins.entrySet()) {
+      final CollectRequest request = makeRequest(e.getValue(), e.getKey());
+      if (request == null) {
+        logger.debug("Plugin can't be pre-resolved because its version is not defined: " + e.getKey().getKey());
+        allRequested = false;
+      } else {
+        requests.putIfAbsent(e.getKey().getId() + e.getKey().getDependencies(), request);
+      }
+    }
+
+    final PluginPreresolver result = new PluginPreresolver(requests);
+    final boolean allPluginsRequested = allRequested;
+    final Thread thread = new Thread(() -> {
+      final long start = System.nanoTime();
+      boolean ok = allPluginsRequested;
+      try {
+        for (final Map.Entry<String, CollectRequest> e : requests.entrySet()) {
+          try {
+            final DependencyRequest dependencyRequest = new DependencyRequest(e.getValue(), new ScopeDependencyFilter("provided", "test", "system"));
+            repositorySystem.resolveDependencies(repositorySession, dependencyRequest);
+          } catch (Exception ex) {
+            logger.warn("Can't pre-resolve finishing plugin " + e.getValue().getRoot() + ": " + ex.getMessage());
+            ok = false;
+          }
+        }
+        result.allResolved = ok;
+        logger.debug(String.format("Pre-resolved %d finishing plugin(s) in %d ms, all resolved: %b",
+            requests.size(), (System.nanoTime() - start) / 1000000L, ok));
+      } finally {
+        result.completed.countDown();
+      }
+    }, THREAD_NAME);
+    thread.setDaemon(true);
+    thread.start();
+    return result;
+  }
+
+  /**
+   * Check that resolution is completed and all plugins have been resolved.
+   *
+   * @param waitMs max time to wait completion of resolution
+   * @return true if all plugins are present in local repository
+   */
+  boolean isAllResolved(final long waitMs) {
+    try {
+      return this.completed.await(waitMs, TimeUnit.MILLISECONDS) && this.allResolved;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.shared.utils.cli.CommandLineException;
+import org.apache.maven.shared.utils.cli.CommandLineTimeOutException;
+import org.apache.maven.shared.utils.cli.Commandline;
+
+/**
+ * Executes external process of finishing task and kills whole process tree if execution time is over.
+ */
+final class ProcessRunner {
+
+  private static final long KILL_GRACE_PERIOD_MS = 5000L;
+  private static final long PUMP_JOIN_TIMEOUT_MS = 2000L;
+
+  private ProcessRunner() {
+  }
+
+  /**
+   * Execute command line.
+   *
+   * @param deadline time in milliseconds when kill of the process and read of its output must be completed, Long.MAX_VALUE if not limited
+   * @return exit code of the process
+   * @throws CommandLineTimeOutException if process was killed because of timeout
+   */
+  static int run(
+      final Commandline commandline,
+      final TaskOutputCollector collector,
+      final long timeoutMs,
+      final long deadline
+  ) throws CommandLineException, InterruptedException {
+    return waitFor(commandline.execute(), collector, timeoutMs, deadline);
+  }
+
+  /**
+   * Start process directly, without shell.
+   *
+   * @param deadline time in milliseconds when kill of the process and read of its output must be completed, Long.MAX_VALUE if not limited
+   * @return exit code of the process
+   * @throws IOException                 if process can't be started
+   * @throws CommandLineTimeOutException if process was killed because of timeout
+   */
+  static int run(
+      final ProcessBuilder processBuilder,
+      final TaskOutputCollector collector,
+      final long timeoutMs,
+      final long deadline
+  ) throws IOException, CommandLineException, InterruptedException {
+    return waitFor(processBuilder.start(), collector, timeoutMs, deadline);
+  }
+
+  private static int waitFor(
+      final Process process,
+      final TaskOutputCollector collector,
+      final long timeoutMs,
+      final long deadline
+  ) throws CommandLineException, InterruptedException {
+    final Thread outPump = startPump(process.getInputStream(), collector::onOutput, "mvn-finisher-out-pump");
+    final Thread errPump = startPump(process.getErrorStream(), collector::onError, "mvn-finisher-err-pump");
+    try {
+      if (!process.waitFor(Math.max(0L, timeoutMs), TimeUnit.MILLISECONDS)) {
+        killTree(process, deadline);
+        throw new CommandLineTimeOutException("Process is longer than " + timeoutMs + " ms and it has been killed", null);
+      }
+      return process.exitValue();
+    } catch (InterruptedException ex) {
+      killTree(process, deadline);
+      throw ex;
+    } finally {
+      // descendants of the process can keep pipes open, so that wait pumps only limited time
+      joinPump(outPump, deadline);
+      joinPump(errPump, deadline);
+    }
+  }
+
+  private static void joinPump(final Thread pump, final long deadline) throws InterruptedException {
+    final long timeout = Math.min(PUMP_JOIN_TIMEOUT_MS, deadline - System.currentTimeMillis());
+    if (timeout > 0L) {
+      pump.join(timeout);
+    }
+  }
+
+  private static Thread startPump(final InputStream stream, final Consumer<String> consumer, final String name) {
+    final Thread thread = new Thread(() -> {
+      try (final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, Charset.defaultCharset()))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          consumer.accept(line);
+        }
+      } catch (IOException ex) {
+        // stream closed
+      }
+    }, name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Kill process and all its descendants, at first gracefully and after grace period forcibly.
+   */
+  static void killTree(final Process process) {
+    killTree(process, Long.MAX_VALUE);
+  }
+
+  /**
+   * Kill process and all its descendants, at first gracefully and after grace period forcibly.
+   * Descendants are available only on Java 9+ so that they are accessed through reflection.
+   *
+   * @param deadline time in milliseconds when grace period must be over, Long.MAX_VALUE if only default grace period is used
+   */
+  static void killTree(final Process process, final long deadline) {
+    final List<Object> descendants = findDescendants(process);
+    for (final Object handle : descendants) {
+      callHandle(handle, "destroy");
+    }
+    process.destroy();
+
+    final long graceEnd = Math.min(System.currentTimeMillis() + KILL_GRACE_PERIOD_MS, deadline);
+    try {
+      while (System.currentTimeMillis() < graceEnd
+          && (process.isAlive() || descendants.stream().anyMatch(x -> Boolean.TRUE.equals(callHandle(x, "isAlive"))))) {
+        Thread.sleep(100L);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    for (final Object handle : descendants) {
+      callHandle(handle, "destroyForcibly");
+    }
+    process.destroyForcibly();
+  }
+
+  private static List<Object> findDescendants(final Process process) {
+    try {
+      final Method descendantsMethod = Process.class.getMethod("descendants");
+      @SuppressWarnings("unchecked") final Stream<Object> stream = (Stream<Object>) descendantsMethod.invoke(process);
+      return stream.collect(Collectors.toList());
+    } catch (Exception ex) {
+      return new ArrayList<>();
+    }
+  }
+
+  private static Object callHandle(final Object handle, final String method) {
+    try {
+      final Method m = Class.forName("java.lang.ProcessHandle").getMethod(method);
+      return m.invoke(handle);
+    } catch (Exception ex) {
+      return null;
+    }
+  }
+}
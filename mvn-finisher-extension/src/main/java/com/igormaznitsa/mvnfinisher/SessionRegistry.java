@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Registry of sessions with finishing plans. Session is registered after projects read and released as soon as its finishing is completed,
+ * so that the registry doesn't keep sessions in long living JVM (like maven daemon or IDE) which executes many builds.
+ */
+final class SessionRegistry {
+
+  private final Map<MavenSession, SessionState> states = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  SessionState register(final MavenSession session, final FinishingPlan plan) {
+    final SessionState state = new SessionState(plan, this.sequence.incrementAndGet());
+    final SessionState previous = this.states.put(session, state);
+    if (previous != null) {
+      previous.close();
+    }
+    return state;
+  }
+
+  /**
+   * Find state of registered session.
+   *
+   * @param session session, must not be null
+   * @return found state or null if session is not registered or already released
+   */
+  SessionState find(final MavenSession session) {
+    return this.states.get(session);
+  }
+
+  /**
+   * Get registered sessions which finishing is not started yet.
+   *
+   * @return sessions, the latest registered one is the first one
+   */
+  List<MavenSession> findNonProcessed() {
+    final List<Map.Entry<MavenSession, SessionState>> entries = new ArrayList<>(this.states.entrySet());
+    entries.sort((x, y) -> Long.compare(y.getValue().sequence, x.getValue().sequence));
+    final List<MavenSession> result = new ArrayList<>();
+    for (final Map.Entry<MavenSession, SessionState> e : entries) {
+      if (!e.getValue().processing.get()) {
+        result.add(e.getKey());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Remove session from registry and close all its resources.
+   */
+  void release(final MavenSession session) {
+    final SessionState state = this.states.remove(session);
+    if (state != null) {
+      state.close();
+    }
+  }
+
+  int size() {
+    return this.states.size();
+  }
+
+  /**
+   * Finishing plan and resources allocated for single session.
+   */
+  static final class SessionState implements AutoCloseable {
+    private final FinishingPlan plan;
+    private final long sequence;
+    private final AtomicBoolean processing = new AtomicBoolean();
+    private volatile WorkerPool workerPool;
+    private volatile PluginPreresolver preresolver;
+    private volatile LiveConsole liveConsole;
+    private volatile FinishingJournal journal;
+    private volatile boolean force;
+    private volatile long forceDeadline = Long.MAX_VALUE;
+    private volatile long startupOverhead;
+
+    private SessionState(final FinishingPlan plan, final long sequence) {
+      this.plan = plan;
+      this.sequence = sequence;
+    }
+
+    FinishingPlan getPlan() {
+      return this.plan;
+    }
+
+    /**
+     * Mark session as processing one.
+     *
+     * @return true if the session has been marked by the call, false if it is already in processing
+     */
+    synchronized boolean startProcessing() {
+      return this.processing.compareAndSet(false, true);
+    }
+
+    WorkerPool getWorkerPool() {
+      return this.workerPool;
+    }
+
+    void setWorkerPool(final WorkerPool workerPool) {
+      this.workerPool = workerPool;
+    }
+
+    PluginPreresolver getPreresolver() {
+      return this.preresolver;
+    }
+
+    void setPreresolver(final PluginPreresolver preresolver) {
+      this.preresolver = preresolver;
+    }
+
+    LiveConsole getLiveConsole() {
+      return this.liveConsole;
+    }
+
+    void setLiveConsole(final LiveConsole liveConsole) {
+      this.liveConsole = liveConsole;
+    }
+
+    FinishingJournal getJournal() {
+      return this.journal;
+    }
+
+    /**
+     * Set journal written in background.
+     *
+     * @return false if finishing of the session is already started, the journal must be closed by caller
+     */
+    synchronized boolean setJournal(final FinishingJournal journal) {
+      if (this.processing.get()) {
+        return false;
+      }
+      this.journal = journal;
+      return true;
+    }
+
+    /**
+     * Time in milliseconds spent by the extension at the session start.
+     */
+    long getStartupOverhead() {
+      return this.startupOverhead;
+    }
+
+    void setStartupOverhead(final long startupOverhead) {
+      this.startupOverhead = startupOverhead;
+    }
+
+    boolean isForce() {
+      return this.force;
+    }
+
+    long getForceDeadline() {
+      return this.forceDeadline;
+    }
+
+    /**
+     * Switch session into force finishing with time limit.
+     *
+     * @param deadline time in milliseconds when all force finishing tasks must be completed
+     */
+    void startForce(final long deadline) {
+      this.forceDeadline = deadline;
+      this.force = true;
+    }
+
+    @Override
+    public synchronized void close() {
+      this.processing.set(true);
+      this.preresolver = null;
+      final LiveConsole console = this.liveConsole;
+      this.liveConsole = null;
+      if (console != null) {
+        console.close();
+      }
+      final WorkerPool pool = this.workerPool;
+      this.workerPool = null;
+      if (pool != null) {
+        pool.close();
+      }
+      final FinishingJournal foundJournal = this.journal;
+      this.journal = null;
+      if (foundJournal != null) {
+        try {
+          foundJournal.close();
+        } catch (IOException ex) {
+          // journal without lock will be recovered by next build
+        }
+      }
+    }
+  }
+}
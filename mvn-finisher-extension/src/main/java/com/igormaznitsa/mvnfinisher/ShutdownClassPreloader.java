@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Loads classes needed by force finishing in JVM shutdown hook, because extension class realm can be already disposed during shutdown.
+ */
+final class ShutdownClassPreloader {
+
+  private static final String THREAD_NAME = "mvn-finisher-class-preloader";
+
+  private static final String[] CLASSES = new String[] {
+      "org.apache.maven.shared.invoker.DefaultInvocationRequest",
+      "org.apache.maven.shared.invoker.DefaultInvocationResult",
+      "org.apache.maven.shared.invoker.DefaultInvoker",
+      "org.apache.maven.shared.invoker.InvocationOutputHandler",
+      "org.apache.maven.shared.invoker.InvocationRequest$CheckSumPolicy",
+      "org.apache.maven.shared.invoker.InvocationRequest$ReactorFailureBehavior",
+      "org.apache.maven.shared.invoker.MavenCommandLineBuilder",
+      "org.apache.maven.shared.invoker.MavenInvocationException",
+      "org.apache.maven.shared.invoker.CommandLineConfigurationException",
+      "org.apache.maven.shared.invoker.SystemOutLogger",
+      "org.apache.maven.shared.utils.Os",
+      "org.apache.maven.shared.utils.StringUtils",
+      "org.apache.maven.shared.utils.cli.Arg",
+      "org.apache.maven.shared.utils.cli.CommandLineCallable",
+      "org.apache.maven.shared.utils.cli.CommandLineException",
+      "org.apache.maven.shared.utils.cli.CommandLineTimeOutException",
+      "org.apache.maven.shared.utils.cli.CommandLineUtils",
+      "org.apache.maven.shared.utils.cli.CommandLineUtils$1",
+      "org.apache.maven.shared.utils.cli.CommandLineUtils$2",
+      "org.apache.maven.shared.utils.cli.Commandline",
+      "org.apache.maven.shared.utils.cli.Commandline$Argument",
+      "org.apache.maven.shared.utils.cli.StreamConsumer",
+      "org.apache.maven.shared.utils.cli.StreamFeeder",
+      "org.apache.maven.shared.utils.cli.StreamPumper",
+      "org.apache.maven.shared.utils.cli.shell.BourneShell",
+      "org.apache.maven.shared.utils.cli.shell.CmdShell",
+      "org.apache.maven.shared.utils.cli.shell.CommandShell",
+      "org.apache.maven.shared.utils.cli.shell.Shell",
+      "org.apache.maven.execution.BuildFailure",
+      "org.apache.maven.execution.BuildSuccess",
+      "com.igormaznitsa.mvnfinisher.FinishingCache",
+      "com.igormaznitsa.mvnfinisher.FinishingLock",
+      "com.igormaznitsa.mvnfinisher.FinishingPlan",
+      "com.igormaznitsa.mvnfinisher.FinishingSettings",
+      "com.igormaznitsa.mvnfinisher.PluginPreresolver",
+      "com.igormaznitsa.mvnfinisher.LiveConsole",
+      "com.igormaznitsa.mvnfinisher.LiveConsole$Channel",
+      "com.igormaznitsa.mvnfinisher.FinishingScheduler",
+      "com.igormaznitsa.mvnfinisher.MvnFinisherLifecycleParticipant$ForkedInvocation",
+      "com.igormaznitsa.mvnfinisher.FinishingTask",
+      "com.igormaznitsa.mvnfinisher.FinishingTaskResult",
+      "com.igormaznitsa.mvnfinisher.FinishingTaskMetrics",
+      "com.igormaznitsa.mvnfinisher.FinishingSessionMetrics",
+      "com.igormaznitsa.mvnfinisher.FinishingListener",
+      "com.igormaznitsa.mvnfinisher.FinishingReportWriter",
+      "com.igormaznitsa.mvnfinisher.ProcessRunner",
+      "com.igormaznitsa.mvnfinisher.FastStartLauncher",
+      "com.igormaznitsa.mvnfinisher.TaskOutputCollector"
+  };
+
+  private static final AtomicBoolean started = new AtomicBoolean();
+
+  private ShutdownClassPreloader() {
+  }
+
+  static void startIfNotStarted(final Logger logger) {
+    if (started.compareAndSet(false, true)) {
+      final ClassLoader classLoader = ShutdownClassPreloader.class.getClassLoader();
+      final Thread thread = new Thread(() -> {
+        final long start = System.nanoTime();
+        int loaded = 0;
+        for (final String name : CLASSES) {
+          try {
+            Class.forName(name, true, classLoader);
+            loaded++;
+          } catch (Throwable ex) {
+            logger.debug("Can't preload class " + name + ": " + ex.getMessage());
+          }
+        }
+        logger.debug(String.format("Preloaded %d class(es) for force finishing in %d ms", loaded, (System.nanoTime() - start) / 1000000L));
+      }, THREAD_NAME);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+}
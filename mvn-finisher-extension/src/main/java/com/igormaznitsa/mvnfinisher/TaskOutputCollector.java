@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects output of finishing task line by line. Lines are written into log file as they arrive and only bounded number of the last lines is kept in memory.
+ */
+final class TaskOutputCollector implements AutoCloseable {
+
+  private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
+  private final int tailSize;
+  private final Predicate<String> markerFilter;
+  private final Deque<String> outputTail = new ArrayDeque<>();
+  private final Deque<String> errorTail = new ArrayDeque<>();
+  private final List<String> markers = new ArrayList<>();
+  private long outputLines;
+  private long errorLines;
+  private long bytes;
+  private long firstLineTime;
+  private Writer logWriter;
+  private LiveConsole.Channel liveChannel;
+  private IOException logError;
+
+  TaskOutputCollector(final int tailSize, final Predicate<String> markerFilter) {
+    this.tailSize = Math.max(1, tailSize);
+    this.markerFilter = markerFilter;
+  }
+
+  synchronized void openLog(final File logFile, final boolean gzip) throws IOException {
+    final FileChannel channel = FileChannel.open(logFile.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+    OutputStream stream = Channels.newOutputStream(channel);
+    if (gzip) {
+      stream = new GZIPOutputStream(stream, WRITER_BUFFER_SIZE);
+    }
+    this.logWriter = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+  }
+
+  synchronized void setLiveChannel(final LiveConsole.Channel channel) {
+    this.liveChannel = channel;
+  }
+
+  synchronized boolean isLive() {
+    return this.liveChannel != null;
+  }
+
+  void onOutput(final String line) {
+    this.onLine(line, false);
+  }
+
+  void onError(final String line) {
+    this.onLine(line, true);
+  }
+
+  private synchronized void onLine(final String line, final boolean error) {
+    if (this.firstLineTime == 0L) {
+      this.firstLineTime = System.currentTimeMillis();
+    }
+    this.bytes += line.length() + 1;
+    if (error) {
+      this.errorLines++;
+      addToTail(this.errorTail, line);
+    } else {
+      this.outputLines++;
+      addToTail(this.outputTail, line);
+    }
+    if (this.liveChannel != null) {
+      this.liveChannel.onLine(line, error);
+    }
+    if (this.markerFilter != null && this.markerFilter.test(line)) {
+      this.markers.add(line);
+    }
+    if (this.logWriter != null && this.logError == null) {
+      try {
+        if (error) {
+          this.logWriter.write("[ERR] ");
+        }
+        this.logWriter.write(line);
+        this.logWriter.write('\n');
+      } catch (IOException ex) {
+        this.logError = ex;
+      }
+    }
+  }
+
+  private void addToTail(final Deque<String> tail, final String line) {
+    if (tail.size() == this.tailSize) {
+      tail.removeFirst();
+    }
+    tail.addLast(line);
+  }
+
+  synchronized List<String> getOutputTail() {
+    return Collections.unmodifiableList(new ArrayList<>(this.outputTail));
+  }
+
+  synchronized List<String> getErrorTail() {
+    return Collections.unmodifiableList(new ArrayList<>(this.errorTail));
+  }
+
+  synchronized List<String> getMarkers() {
+    return Collections.unmodifiableList(new ArrayList<>(this.markers));
+  }
+
+  synchronized long getOutputLines() {
+    return this.outputLines;
+  }
+
+  synchronized long getErrorLines() {
+    return this.errorLines;
+  }
+
+  synchronized long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Get time of the first received line.
+   *
+   * @return time in milliseconds or 0 if there was not any line
+   */
+  synchronized long getFirstLineTime() {
+    return this.firstLineTime;
+  }
+
+  synchronized IOException getLogError() {
+    return this.logError;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (this.liveChannel != null) {
+      this.liveChannel.close();
+    }
+    if (this.logWriter != null) {
+      try {
+        this.logWriter.close();
+      } catch (IOException ex) {
+        if (this.logError == null) {
+          this.logError = ex;
+        }
+      } finally {
+        this.logWriter = null;
+      }
+    }
+  }
+}
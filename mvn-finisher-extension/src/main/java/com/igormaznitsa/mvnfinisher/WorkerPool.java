@@ -0,0 +1,388 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.shared.utils.cli.CommandLineException;
+import org.apache.maven.shared.utils.cli.CommandLineTimeOutException;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Pool of warm worker JVMs executing maven requests of finishing tasks, a crashed worker is replaced by new one.
+ * Worker is started with environment of its requests, a worker with another environment is replaced. Every maven request of a worker makes new
+ * class realms, so that a worker is replaced after limited number of requests to keep its memory bounded.
+ */
+final class WorkerPool implements AutoCloseable {
+
+  private static final int CONNECT_TIMEOUT_MS = 60000;
+  private static final int ACCEPT_POLL_TIMEOUT_MS = 200;
+  private static final long IDLE_POLL_TIMEOUT_MS = 200L;
+  private static final int MAX_REQUESTS_PER_WORKER = 50;
+  private static final String THREAD_NAME = "mvn-finisher-worker-starter";
+
+  private final int size;
+  private final List<String> command;
+  private final Logger logger;
+  private final AtomicInteger started = new AtomicInteger();
+  private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+  private final List<Worker> all = new CopyOnWriteArrayList<>();
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  private WorkerPool(final int size, final List<String> command, final Logger logger) {
+    this.size = size;
+    this.command = command;
+    this.logger = logger;
+  }
+
+  /**
+   * Make pool for maven of the current process.
+   *
+   * @return pool or null if maven installation can't be found
+   */
+  static WorkerPool makeForCurrentMaven(final int size, final Logger logger) {
+    final String mavenHomePath = System.getProperty("maven.home");
+    if (mavenHomePath == null) {
+      logger.warn("Can't find maven.home, workers are not allowed");
+      return null;
+    }
+    final File mavenHome = new File(mavenHomePath);
+    final File libFolder = new File(mavenHome, "lib");
+    final File[] libs = libFolder.listFiles((dir, name) -> name.endsWith(".jar"));
+    if (libs == null || libs.length == 0) {
+      logger.warn("Can't find maven libraries in " + libFolder + ", workers are not allowed");
+      return null;
+    }
+
+    // extension jar can't be used as class path because its components would be loaded into core realm of worker maven
+    final File workerClassFolder;
+    try {
+      workerClassFolder = extractWorkerClasses();
+    } catch (IOException ex) {
+      logger.warn("Can't extract finishing worker classes, workers are not allowed: " + ex.getMessage());
+      return null;
+    }
+
+    final StringBuilder classPath = new StringBuilder(workerClassFolder.getAbsolutePath());
+    classPath.append(File.pathSeparatorChar).append(new File(mavenHome, "conf" + File.separatorChar + "logging").getAbsolutePath());
+    final File[] bootLibs = new File(mavenHome, "boot").listFiles((dir, name) -> name.endsWith(".jar"));
+    if (bootLibs != null) {
+      for (final File f : bootLibs) {
+        classPath.append(File.pathSeparatorChar).append(f.getAbsolutePath());
+      }
+    }
+    final File[] extLibs = new File(libFolder, "ext").listFiles((dir, name) -> name.endsWith(".jar"));
+    if (extLibs != null) {
+      for (final File f : extLibs) {
+        classPath.append(File.pathSeparatorChar).append(f.getAbsolutePath());
+      }
+    }
+    for (final File f : libs) {
+      classPath.append(File.pathSeparatorChar).append(f.getAbsolutePath());
+    }
+
+    final List<String> command = new ArrayList<>();
+    command.add(new File(System.getProperty("java.home"), "bin" + File.separatorChar + "java").getAbsolutePath());
+    command.add("-cp");
+    command.add(classPath.toString());
+    command.add("-Dmaven.home=" + mavenHome.getAbsolutePath());
+    command.add("-Dmaven.conf=" + new File(mavenHome, "conf").getAbsolutePath());
+    command.add(FinishingWorker.class.getName());
+    return new WorkerPool(Math.max(1, size), command, logger);
+  }
+
+  private static File extractWorkerClasses() throws IOException {
+    final File folder = Files.createTempDirectory("mvn-finisher-worker").toFile();
+    folder.deleteOnExit();
+    File current = folder;
+    for (final String part : FinishingWorker.class.getPackage().getName().split("\\.")) {
+      current = new File(current, part);
+      if (!current.mkdir()) {
+        throw new IOException("Can't create folder: " + current);
+      }
+      current.deleteOnExit();
+    }
+    final List<Class<?>> classes = new ArrayList<>();
+    classes.add(FinishingWorker.class);
+    classes.addAll(Arrays.asList(FinishingWorker.class.getDeclaredClasses()));
+    for (final Class<?> klazz : classes) {
+      final String name = klazz.getName().substring(klazz.getName().lastIndexOf('.') + 1) + ".class";
+      final File target = new File(current, name);
+      try (final InputStream in = klazz.getResourceAsStream(name)) {
+        if (in == null) {
+          throw new IOException("Can't find class resource: " + name);
+        }
+        Files.copy(in, target.toPath());
+      }
+      target.deleteOnExit();
+    }
+    return folder;
+  }
+
+  /**
+   * Start the first worker in background to avoid its start delay at the first task.
+   *
+   * @param environment environment variables expected by tasks, they are added to the environment of the current process
+   */
+  void prestart(final Map<String, String> environment) {
+    if (this.started.compareAndSet(0, 1)) {
+      final Thread thread = new Thread(() -> {
+        try {
+          this.idle.add(this.startWorker(environment));
+        } catch (IOException ex) {
+          this.started.decrementAndGet();
+          this.logger.warn("Can't prestart finishing worker: " + ex.getMessage());
+        }
+      }, THREAD_NAME);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Execute maven request in a worker. Task is never executed twice, a worker crashed during task execution makes task failed.
+   *
+   * @param environment environment variables of maven process, they are added to the environment of the current process
+   * @return exit code of maven
+   * @throws IOException                 if request can't be sent to a worker, the task is not started
+   * @throws CommandLineTimeOutException if execution time is over
+   * @throws CommandLineException        if worker crashed during task execution
+   * @throws InterruptedException        if thread interrupted
+   */
+  int execute(
+      final File workingDirectory,
+      final String[] args,
+      final Map<String, String> environment,
+      final long timeoutMs,
+      final TaskOutputCollector collector
+  ) throws IOException, CommandLineException, InterruptedException {
+    for (int attempt = 0; attempt < 2; attempt++) {
+      final Worker worker = this.acquire(environment);
+      if (!worker.process.isAlive()) {
+        this.logger.warn("Detected dead idle finishing worker, it will be replaced");
+        this.dispose(worker);
+        continue;
+      }
+      try {
+        final int result = worker.execute(workingDirectory, args, timeoutMs, collector);
+        if (++worker.requests >= MAX_REQUESTS_PER_WORKER) {
+          this.logger.debug("Finishing worker is replaced after " + worker.requests + " request(s)");
+          this.dispose(worker);
+        } else {
+          this.idle.add(worker);
+        }
+        return result;
+      } catch (SocketTimeoutException ex) {
+        this.dispose(worker);
+        throw new CommandLineTimeOutException("Finishing task is longer than " + timeoutMs + " ms", ex);
+      } catch (IOException ex) {
+        this.logger.warn("Detected crash of finishing worker, it will be replaced: " + ex.getMessage());
+        this.dispose(worker);
+        // the task could be partly executed so that it is not restarted
+        throw new CommandLineException("Finishing worker crashed during task execution: " + ex.getMessage(), ex);
+      }
+    }
+    throw new IOException("Can't get live finishing worker");
+  }
+
+  private Worker acquire(final Map<String, String> environment) throws IOException, InterruptedException {
+    while (true) {
+      if (this.closed.get()) {
+        throw new IOException("Worker pool is closed");
+      }
+      for (final Iterator<Worker> iterator = this.idle.iterator(); iterator.hasNext(); ) {
+        final Worker worker = iterator.next();
+        if (worker.environment.equals(environment) && this.idle.remove(worker)) {
+          return worker;
+        }
+      }
+      final int current = this.started.get();
+      if (current < this.size) {
+        if (this.started.compareAndSet(current, current + 1)) {
+          try {
+            return this.startWorker(environment);
+          } catch (IOException ex) {
+            this.started.decrementAndGet();
+            throw ex;
+          }
+        }
+      } else {
+        // wait with timeout because failed start of a worker decreases number of started ones
+        final Worker worker = this.idle.poll(IDLE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (worker != null) {
+          if (worker.environment.equals(environment)) {
+            return worker;
+          }
+          this.logger.debug("Finishing worker is replaced because of another environment");
+          this.dispose(worker);
+        }
+      }
+    }
+  }
+
+  private void dispose(final Worker worker) {
+    this.all.remove(worker);
+    this.started.decrementAndGet();
+    worker.close();
+  }
+
+  private Worker startWorker(final Map<String, String> environment) throws IOException {
+    final String token = Long.toHexString(new SecureRandom().nextLong());
+    try (final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      server.setSoTimeout(ACCEPT_POLL_TIMEOUT_MS);
+      final List<String> workerCommand = new ArrayList<>(this.command);
+      workerCommand.add(Integer.toString(server.getLocalPort()));
+      workerCommand.add(token);
+      final long start = System.currentTimeMillis();
+      final ProcessBuilder processBuilder = new ProcessBuilder(workerCommand).inheritIO();
+      processBuilder.environment().putAll(environment);
+      final Process process = processBuilder.start();
+      try {
+        Socket socket = null;
+        while (socket == null) {
+          try {
+            socket = server.accept();
+          } catch (SocketTimeoutException ex) {
+            if (!process.isAlive()) {
+              throw new IOException("Finishing worker process is terminated, exit code " + process.exitValue());
+            }
+            if (System.currentTimeMillis() - start > CONNECT_TIMEOUT_MS) {
+              throw ex;
+            }
+          }
+        }
+        socket.setTcpNoDelay(true);
+        final Worker worker = new Worker(process, socket, environment);
+        if (!token.equals(FinishingWorker.readString(worker.in))) {
+          worker.close();
+          throw new IOException("Wrong token from finishing worker");
+        }
+        this.all.add(worker);
+        this.logger.debug(String.format("Finishing worker started in %d ms", System.currentTimeMillis() - start));
+        return worker;
+      } catch (IOException ex) {
+        ProcessRunner.killTree(process);
+        throw ex;
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (this.closed.compareAndSet(false, true)) {
+      for (final Worker w : this.all) {
+        w.close();
+      }
+      this.all.clear();
+      this.idle.clear();
+    }
+  }
+
+  private static final class Worker {
+    private final Process process;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Map<String, String> environment;
+    private int requests;
+
+    private Worker(final Process process, final Socket socket, final Map<String, String> environment) throws IOException {
+      this.process = process;
+      this.socket = socket;
+      this.environment = Collections.unmodifiableMap(new HashMap<>(environment));
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    private int execute(
+        final File workingDirectory,
+        final String[] args,
+        final long timeoutMs,
+        final TaskOutputCollector collector
+    ) throws IOException {
+      final long deadline = System.currentTimeMillis() + timeoutMs;
+      FinishingWorker.writeString(this.out, workingDirectory.getAbsolutePath());
+      this.out.writeInt(args.length);
+      for (final String a : args) {
+        FinishingWorker.writeString(this.out, a);
+      }
+      this.out.flush();
+
+      while (true) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0L) {
+          throw new SocketTimeoutException("Timeout");
+        }
+        this.socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, remaining));
+        final int frame = this.in.readUnsignedByte();
+        switch (frame) {
+          case FinishingWorker.FRAME_OUTPUT:
+          case FinishingWorker.FRAME_ERROR: {
+            final byte[] data = new byte[this.in.readInt()];
+            this.in.readFully(data);
+            final String line = new String(data, StandardCharsets.UTF_8);
+            if (frame == FinishingWorker.FRAME_OUTPUT) {
+              collector.onOutput(line);
+            } else {
+              collector.onError(line);
+            }
+          }
+          break;
+          case FinishingWorker.FRAME_EXIT:
+            return this.in.readInt();
+          default:
+            throw new IOException("Unexpected frame from finishing worker: " + frame);
+        }
+      }
+    }
+
+    private void close() {
+      try {
+        this.socket.close();
+      } catch (IOException ex) {
+        // ignore
+      }
+      // processes started by mojos of the worker must not be orphaned
+      ProcessRunner.killTree(this.process);
+    }
+  }
+}
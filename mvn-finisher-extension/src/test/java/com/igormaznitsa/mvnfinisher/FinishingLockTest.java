@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that sessions of the same JVM (like maven daemon) and of other processes don't skip finishing of the same folder.
+ */
+public class FinishingLockTest {
+
+  private static final Logger LOGGER = new ConsoleLogger(Logger.LEVEL_ERROR, "test");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSessionOfSameJvmWaitsForRelease() throws Exception {
+    final File file = new File(this.folder.getRoot(), ".finishingStarted");
+    final FinishingLock first = FinishingLock.tryLock(file, Long.MAX_VALUE, LOGGER);
+    assertNotNull(first);
+
+    final CompletableFuture<FinishingLock> second = CompletableFuture.supplyAsync(() -> {
+      try {
+        return FinishingLock.tryLock(file, Long.MAX_VALUE, LOGGER);
+      } catch (Exception ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    try {
+      second.get(500L, TimeUnit.MILLISECONDS);
+      throw new AssertionError("Second session must wait");
+    } catch (TimeoutException ex) {
+      // expected
+    }
+
+    first.close();
+    final FinishingLock secondLock = second.get(5L, TimeUnit.SECONDS);
+    assertNotNull(secondLock);
+    assertTrue(file.isFile());
+    secondLock.close();
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void testFinishingWithoutLockAfterWaitTimeout() throws Exception {
+    final File file = new File(this.folder.getRoot(), ".finishingStarted");
+    final FinishingLock first = FinishingLock.tryLock(file, Long.MAX_VALUE, LOGGER);
+    assertNotNull(first);
+    final FinishingLock second = FinishingLock.tryLock(file, 100L, LOGGER);
+    assertNotNull(second);
+    second.close();
+    assertTrue("Lock file of the first session must be kept", file.isFile());
+    first.close();
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void testSessionWaitsForReleaseByAnotherProcess() throws Exception {
+    final File file = new File(this.folder.getRoot(), ".finishingStarted");
+    final Process holder = startLockHolder(file, 1000L);
+    try {
+      final long start = System.currentTimeMillis();
+      final FinishingLock lock = FinishingLock.tryLock(file, 30000L, LOGGER);
+      assertTrue("Lock must be waited", System.currentTimeMillis() - start >= 500L);
+      lock.close();
+      assertFalse("Lock file must be deleted by owner of the lock", file.exists());
+    } finally {
+      holder.destroyForcibly().waitFor();
+    }
+  }
+
+  @Test
+  public void testFinishingWithoutLockAfterWaitForAnotherProcess() throws Exception {
+    final File file = new File(this.folder.getRoot(), ".finishingStarted");
+    final Process holder = startLockHolder(file, 60000L);
+    try {
+      final FinishingLock lock = FinishingLock.tryLock(file, 300L, LOGGER);
+      assertNotNull(lock);
+      lock.close();
+      assertTrue("Lock file of another process must be kept", file.isFile());
+    } finally {
+      holder.destroyForcibly().waitFor();
+    }
+  }
+
+  private static Process startLockHolder(final File file, final long holdMs) throws Exception {
+    final Process process = new ProcessBuilder(
+        new File(System.getProperty("java.home"), "bin" + File.separator + "java").getAbsolutePath(),
+        "-cp", System.getProperty("java.class.path"),
+        FinishingLockTest.class.getName(), file.getAbsolutePath(), Long.toString(holdMs))
+        .redirectErrorStream(true)
+        .start();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    final String line = reader.readLine();
+    if (!"locked".equals(line)) {
+      process.destroyForcibly();
+      throw new AssertionError("Lock holder is not started: " + line);
+    }
+    return process;
+  }
+
+  /**
+   * Entry point of process which holds OS lock of file for some time.
+   */
+  public static void main(final String... args) throws Exception {
+    try (final FileChannel channel = FileChannel.open(new File(args[0]).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      channel.lock();
+      System.out.println("locked");
+      System.out.flush();
+      Thread.sleep(Long.parseLong(args[1]));
+    }
+  }
+}
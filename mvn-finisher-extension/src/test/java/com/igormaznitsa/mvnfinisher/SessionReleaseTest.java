@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that long living JVM (like maven daemon) doesn't keep finished sessions.
+ */
+public class SessionReleaseTest {
+
+  private static final int SESSIONS = 300;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSessionsReleasedAndSingleShutdownHook() throws Exception {
+    final MvnFinisherLifecycleParticipant participant = makeParticipant();
+    // every load of the extension realm creates new participant
+    for (int i = 0; i < 10; i++) {
+      makeParticipant();
+    }
+    final SessionRegistry registry = findRegistry(participant);
+
+    final List<WeakReference<MavenSession>> sessionRefs = new ArrayList<>();
+    for (int i = 0; i < SESSIONS; i++) {
+      final MavenSession session = makeSession(this.folder.newFolder("session" + i));
+      sessionRefs.add(new WeakReference<>(session));
+      participant.afterProjectsRead(session);
+      assertEquals(1, registry.size());
+      participant.afterSessionEnd(session);
+      assertEquals(0, registry.size());
+    }
+
+    assertEquals(1, MvnFinisherLifecycleParticipant.countRegisteredShutdownHooks());
+    assertTrue("Sessions must be collectable", isCollected(sessionRefs));
+  }
+
+  private static boolean isCollected(final List<WeakReference<MavenSession>> refs) throws InterruptedException {
+    for (int attempt = 0; attempt < 20; attempt++) {
+      System.gc();
+      if (refs.stream().allMatch(x -> x.get() == null)) {
+        return true;
+      }
+      Thread.sleep(50L);
+    }
+    return false;
+  }
+
+  private static MvnFinisherLifecycleParticipant makeParticipant() throws Exception {
+    final MvnFinisherLifecycleParticipant result = new MvnFinisherLifecycleParticipant();
+    // the same way as plexus container injects requirements
+    final Field logger = MvnFinisherLifecycleParticipant.class.getDeclaredField("logger");
+    logger.setAccessible(true);
+    logger.set(result, new ConsoleLogger(Logger.LEVEL_ERROR, "test"));
+    return result;
+  }
+
+  private static SessionRegistry findRegistry(final MvnFinisherLifecycleParticipant participant) throws Exception {
+    final Field registry = MvnFinisherLifecycleParticipant.class.getDeclaredField("sessionRegistry");
+    registry.setAccessible(true);
+    return (SessionRegistry) registry.get(participant);
+  }
+
+  private static MavenSession makeSession(final File baseDirectory) {
+    final Model model = new Model();
+    model.setGroupId("com.igormaznitsa.test");
+    model.setArtifactId("project");
+    model.setVersion("1.0.0");
+    model.setPackaging("jar");
+    final Build build = new Build();
+    build.setDirectory(new File(baseDirectory, "target").getAbsolutePath());
+    model.setBuild(build);
+
+    final Plugin plugin = new Plugin();
+    plugin.setGroupId("com.igormaznitsa.test");
+    plugin.setArtifactId("test-maven-plugin");
+    plugin.setVersion("1.0.0");
+    for (final String phase : new String[] {
+        MvnFinisherLifecycleParticipant.FINISHING_PHASE,
+        MvnFinisherLifecycleParticipant.FINISHING_PHASE_FORCE}) {
+      final PluginExecution execution = new PluginExecution();
+      execution.setId(phase);
+      execution.setPhase(phase);
+      execution.addGoal("goal");
+      plugin.addExecution(execution);
+    }
+    build.addPlugin(plugin);
+
+    final MavenProject project = new MavenProject(model);
+    project.setFile(new File(baseDirectory, "pom.xml"));
+
+    final MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+    request.setBaseDirectory(baseDirectory);
+    request.setSystemProperties(new Properties());
+    request.setUserProperties(new Properties());
+
+    final List<MavenProject> projects = new ArrayList<>();
+    projects.add(project);
+    @SuppressWarnings("deprecation") final MavenSession session = new MavenSession(null, request, new DefaultMavenExecutionResult(), projects);
+    return session;
+  }
+}
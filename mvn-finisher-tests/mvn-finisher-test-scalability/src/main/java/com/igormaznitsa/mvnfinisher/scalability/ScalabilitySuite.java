@@ -0,0 +1,372 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher.scalability;
+
+import static java.lang.String.format;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates reactors with many modules and finishing executions of stub plugin, builds them offline in success, failure and forced termination
+ * scenarios and compares finishing metrics with stored thresholds.
+ */
+public final class ScalabilitySuite {
+
+  private static final String SCENARIO_SUCCESS = "success";
+  private static final String SCENARIO_FAILURE = "failure";
+  private static final String SCENARIO_FORCE = "force";
+
+  private static final String STUB_GROUP_ID = "com.igormaznitsa";
+  private static final String STUB_ARTIFACT_ID = "mvn-finisher-test-stub-plugin";
+  private static final String SLEEP_MARKER = "FINISHER-STUB-SLEEP";
+  private static final String BUILD_STEP_ID = "build-step";
+  private static final String[] FINISHING_PHASES = {"finish", "finish-ok", "finish-error", "finish-force"};
+
+  private static final long FORCE_BUILD_SLEEP_MS = 600000L;
+  // all force tasks must be executed to measure them, default budget is not enough for slow machines
+  private static final int FORCE_BUDGET_SECONDS = 1800;
+  private static final long MARKER_WAIT_MS = 300000L;
+  private static final long BUILD_WAIT_MINUTES = 60L;
+
+  private final File mavenHome;
+  private final String repository;
+  private final String extensionVersion;
+  private final String stubVersion;
+  private final File folder;
+  private final int modules;
+  private final int forceModules;
+  private final int executions;
+  private final List<String> finisherArgs;
+  private final Properties thresholds;
+
+  private ScalabilitySuite(final Properties properties) throws IOException {
+    this.mavenHome = new File(required(properties, "scalability.maven.home"));
+    this.repository = required(properties, "scalability.repository");
+    this.extensionVersion = required(properties, "scalability.extension.version");
+    this.stubVersion = required(properties, "scalability.stub.version");
+    this.folder = new File(required(properties, "scalability.folder"));
+    this.modules = Integer.parseInt(properties.getProperty("scalability.modules", "200").trim());
+    this.forceModules = Integer.parseInt(properties.getProperty("scalability.force.modules", "20").trim());
+    this.executions = Integer.parseInt(properties.getProperty("scalability.executions", "2").trim());
+    this.finisherArgs = Arrays.stream(properties.getProperty("scalability.finisher.args", "").trim().split("\\s+"))
+        .filter(x -> !x.isEmpty())
+        .collect(Collectors.toList());
+    this.thresholds = new Properties();
+    try (final InputStream in = Files.newInputStream(new File(required(properties, "scalability.thresholds")).toPath())) {
+      this.thresholds.load(in);
+    }
+  }
+
+  private static String required(final Properties properties, final String key) {
+    final String value = properties.getProperty(key);
+    if (value == null || value.trim().isEmpty()) {
+      throw new IllegalArgumentException("Property must be defined: " + key);
+    }
+    return value.trim();
+  }
+
+  public static void main(final String... args) throws Exception {
+    final ScalabilitySuite suite = new ScalabilitySuite(System.getProperties());
+    final List<Result> results = new ArrayList<>();
+    for (final String scenario : System.getProperty("scalability.scenarios", SCENARIO_SUCCESS).split(",")) {
+      if (!scenario.trim().isEmpty()) {
+        results.add(suite.run(scenario.trim().toLowerCase(Locale.ENGLISH)));
+      }
+    }
+
+    System.out.println(format("%-10s %8s %8s %10s %10s %8s %10s %10s", "scenario", "modules", "tasks", "time,ms", "ms/task", "forks", "forks/task", "heapPools,MB"));
+    for (final Result result : results) {
+      System.out.println(format(Locale.ENGLISH, "%-10s %8d %8d %10d %10.1f %8d %10.2f %10d",
+          result.scenario, result.modules, result.tasks, result.time, result.getMillisPerTask(), result.forks, result.getForksPerTask(), result.getHeapPoolPeaksMb()));
+    }
+
+    final List<String> problems = new ArrayList<>();
+    for (final Result result : results) {
+      problems.addAll(result.problems);
+      suite.check(result, "maxMillisPerTask", result.getMillisPerTask(), problems);
+      suite.check(result, "maxForksPerTask", result.getForksPerTask(), problems);
+      suite.check(result, "maxHeapPoolPeaksMb", result.getHeapPoolPeaksMb(), problems);
+    }
+    if (!problems.isEmpty()) {
+      throw new IllegalStateException("Scalability suite failed:\n" + String.join("\n", problems));
+    }
+    System.out.println("Scalability suite completed successfully");
+  }
+
+  private void check(final Result result, final String name, final double value, final List<String> problems) {
+    final String threshold = this.thresholds.getProperty(result.scenario + '.' + name);
+    if (threshold != null && value > Double.parseDouble(threshold.trim())) {
+      problems.add(format(Locale.ENGLISH, "%s: %s is %.2f but threshold is %s", result.scenario, name, value, threshold.trim()));
+    }
+  }
+
+  private Result run(final String scenario) throws Exception {
+    final boolean force = SCENARIO_FORCE.equals(scenario);
+    final boolean failure = SCENARIO_FAILURE.equals(scenario);
+    if (!force && !failure && !SCENARIO_SUCCESS.equals(scenario)) {
+      throw new IllegalArgumentException("Unknown scenario: " + scenario);
+    }
+    final int moduleNumber = force ? this.forceModules : this.modules;
+    final File reactor = new File(this.folder, scenario);
+    deleteFolder(reactor.toPath());
+    generateReactor(reactor, moduleNumber, failure ? moduleNumber / 2 : -1);
+
+    final File journal = new File(reactor, "stub.journal");
+    final File report = new File(reactor, "finishing-report.json");
+    final File log = new File(reactor, "build.log");
+
+    final List<String> command = new ArrayList<>();
+    command.add(new File(new File(this.mavenHome, "bin"), File.separatorChar == '\\' ? "mvn.cmd" : "mvn").getAbsolutePath());
+    command.add("-B");
+    command.add("-o");
+    command.add("-Dmaven.repo.local=" + this.repository);
+    command.add("-Dmvn.finisher.report=true");
+    command.add("-Dmvn.finisher.report.file=" + report.getAbsolutePath());
+    command.add("-Dstub.journal=" + journal.getAbsolutePath());
+    command.addAll(this.finisherArgs);
+    if (failure) {
+      command.add("--fail-at-end");
+    }
+    if (force) {
+      command.add("-Dbuild.sleep=" + FORCE_BUILD_SLEEP_MS);
+      command.add("-Dmvn.finisher.force.budget=" + FORCE_BUDGET_SECONDS);
+    }
+    command.add("validate");
+
+    System.out.println(format("Scenario '%s': %d module(s), %d execution(s) per finishing phase", scenario, moduleNumber, this.executions));
+    final Process process = new ProcessBuilder(command)
+        .directory(reactor)
+        .redirectErrorStream(true)
+        .redirectOutput(log)
+        .start();
+    if (force) {
+      waitForMarker(process, log);
+      // SIGTERM starts shutdown hook of maven JVM
+      process.destroy();
+    }
+    if (!process.waitFor(BUILD_WAIT_MINUTES, TimeUnit.MINUTES)) {
+      process.destroyForcibly();
+      throw new IllegalStateException("Build of scenario " + scenario + " is too long, see " + log);
+    }
+
+    final Result result = new Result(scenario, moduleNumber);
+    final int exitCode = process.exitValue();
+    if (SCENARIO_SUCCESS.equals(scenario) && exitCode != 0) {
+      result.problems.add(format("%s: build failed with exit code %d, see %s", scenario, exitCode, log));
+    }
+    if (failure && exitCode == 0) {
+      result.problems.add(format("%s: build expected to fail, see %s", scenario, log));
+    }
+    if (!report.isFile()) {
+      result.problems.add(format("%s: finishing report is not found, see %s", scenario, log));
+      return result;
+    }
+
+    final String reportText = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+    result.time = findLong(reportText, "time");
+    result.tasks = (int) findLong(reportText, "taskCount");
+    result.heapPoolPeaks = findLong(reportText, "heapPoolPeaksSum");
+    final long errors = findLong(reportText, "errorCount");
+
+    final Set<String> processes = new HashSet<>();
+    int journalTasks = 0;
+    if (journal.isFile()) {
+      for (final String line : Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8)) {
+        final String[] fields = line.trim().split(" ");
+        if (fields.length == 3 && !BUILD_STEP_ID.equals(fields[2])) {
+          processes.add(fields[0]);
+          journalTasks++;
+        }
+      }
+    }
+    result.forks = processes.size();
+
+    // each module has executions for two allowed phases in every scenario
+    final int expectedTasks = moduleNumber * this.executions * 2;
+    if (result.tasks != expectedTasks) {
+      result.problems.add(format("%s: expected %d finishing task(s) but report contains %d", scenario, expectedTasks, result.tasks));
+    }
+    if (journalTasks != expectedTasks) {
+      result.problems.add(format("%s: expected %d stub call(s) but detected %d", scenario, expectedTasks, journalTasks));
+    }
+    if (errors != 0L) {
+      result.problems.add(format("%s: detected %d failed finishing task(s), see %s", scenario, errors, log));
+    }
+    if (failure && countPhase(reportText, "finish-error") != this.executions) {
+      result.problems.add(format("%s: expected %d finish-error task(s)", scenario, this.executions));
+    }
+    if (force && !reportText.contains("\"force\": true")) {
+      result.problems.add(format("%s: report is not made by force finishing", scenario));
+    }
+    return result;
+  }
+
+  private static void waitForMarker(final Process process, final File log) throws IOException, InterruptedException {
+    final long deadline = System.currentTimeMillis() + MARKER_WAIT_MS;
+    while (System.currentTimeMillis() < deadline) {
+      if (log.isFile() && new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8).contains(SLEEP_MARKER)) {
+        return;
+      }
+      if (!process.isAlive()) {
+        throw new IllegalStateException("Build completed before forced termination, see " + log);
+      }
+      Thread.sleep(200L);
+    }
+    process.destroyForcibly();
+    throw new IllegalStateException("Build step is not started, see " + log);
+  }
+
+  private static long findLong(final String json, final String field) {
+    final Matcher matcher = Pattern.compile("\"" + field + "\":\\s*(-?\\d+)").matcher(json);
+    return matcher.find() ? Long.parseLong(matcher.group(1)) : -1L;
+  }
+
+  private static int countPhase(final String json, final String phase) {
+    final Matcher matcher = Pattern.compile("\\{\"projectId\": \"[^\"]*\", \"executionId\": \"[^\"]*\", \"phase\": \"" + Pattern.quote(phase) + "\", \"queueWait\"").matcher(json);
+    int result = 0;
+    while (matcher.find()) {
+      result++;
+    }
+    return result;
+  }
+
+  private void generateReactor(final File reactor, final int moduleNumber, final int failingModule) throws IOException {
+    final StringBuilder moduleList = new StringBuilder();
+    for (int i = 0; i < moduleNumber; i++) {
+      final String name = format("module%04d", i);
+      moduleList.append("    <module>").append(name).append("</module>\n");
+      final StringBuilder pom = new StringBuilder()
+          .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+          .append("  <modelVersion>4.0.0</modelVersion>\n")
+          .append("  <parent><groupId>scalability</groupId><artifactId>root</artifactId><version>1</version></parent>\n")
+          .append("  <artifactId>").append(name).append("</artifactId>\n")
+          .append("  <packaging>pom</packaging>\n");
+      if (i == failingModule) {
+        pom.append("  <properties><build.fail>true</build.fail></properties>\n");
+      }
+      pom.append("  <build><plugins><plugin><groupId>").append(STUB_GROUP_ID).append("</groupId><artifactId>").append(STUB_ARTIFACT_ID)
+          .append("</artifactId></plugin></plugins></build>\n")
+          .append("</project>\n");
+      write(new File(new File(reactor, name), "pom.xml"), pom.toString());
+    }
+
+    final StringBuilder executionList = new StringBuilder();
+    executionList.append("            <execution><id>").append(BUILD_STEP_ID).append("</id><phase>validate</phase><goals><goal>stub</goal></goals>")
+        .append("<configuration><sleep>${build.sleep}</sleep><fail>${build.fail}</fail></configuration></execution>\n");
+    for (final String phase : FINISHING_PHASES) {
+      for (int i = 0; i < this.executions; i++) {
+        executionList.append("            <execution><id>").append(phase).append('-').append(i).append("</id><phase>").append(phase)
+            .append("</phase><goals><goal>stub</goal></goals></execution>\n");
+      }
+    }
+
+    final String rootPom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+        + "  <modelVersion>4.0.0</modelVersion>\n"
+        + "  <groupId>scalability</groupId>\n"
+        + "  <artifactId>root</artifactId>\n"
+        + "  <version>1</version>\n"
+        + "  <packaging>pom</packaging>\n"
+        + "  <properties>\n"
+        + "    <build.sleep>0</build.sleep>\n"
+        + "    <build.fail>false</build.fail>\n"
+        + "  </properties>\n"
+        + "  <modules>\n" + moduleList
+        + "  </modules>\n"
+        + "  <build>\n"
+        + "    <extensions>\n"
+        + "      <extension><groupId>com.igormaznitsa</groupId><artifactId>mvn-finisher-extension</artifactId><version>" + this.extensionVersion + "</version></extension>\n"
+        + "    </extensions>\n"
+        + "    <pluginManagement>\n"
+        + "      <plugins>\n"
+        + "        <plugin>\n"
+        + "          <groupId>" + STUB_GROUP_ID + "</groupId>\n"
+        + "          <artifactId>" + STUB_ARTIFACT_ID + "</artifactId>\n"
+        + "          <version>" + this.stubVersion + "</version>\n"
+        + "          <executions>\n" + executionList
+        + "          </executions>\n"
+        + "        </plugin>\n"
+        + "      </plugins>\n"
+        + "    </pluginManagement>\n"
+        + "  </build>\n"
+        + "</project>\n";
+    write(new File(reactor, "pom.xml"), rootPom);
+  }
+
+  private static void write(final File file, final String text) throws IOException {
+    final File parent = file.getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Can't create folder: " + parent);
+    }
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void deleteFolder(final Path folder) throws IOException {
+    if (Files.exists(folder)) {
+      try (final Stream<Path> paths = Files.walk(folder)) {
+        for (final Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  private static final class Result {
+    private final String scenario;
+    private final int modules;
+    private final List<String> problems = new ArrayList<>();
+    private int tasks;
+    private long time;
+    private int forks;
+    private long heapPoolPeaks;
+
+    private Result(final String scenario, final int modules) {
+      this.scenario = scenario;
+      this.modules = modules;
+    }
+
+    private double getMillisPerTask() {
+      return this.tasks <= 0 ? this.time : (double) this.time / this.tasks;
+    }
+
+    private double getForksPerTask() {
+      return this.tasks <= 0 ? this.forks : (double) this.forks / this.tasks;
+    }
+
+    private long getHeapPoolPeaksMb() {
+      return this.heapPoolPeaks / (1024L * 1024L);
+    }
+  }
+}
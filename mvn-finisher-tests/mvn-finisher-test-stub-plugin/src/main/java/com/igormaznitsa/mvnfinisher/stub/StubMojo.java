@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.igormaznitsa.mvnfinisher.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Stub goal for scalability tests, it doesn't need network and records every call into journal file shared by all maven processes.
+ */
+@Mojo(name = "stub", threadSafe = true, requiresProject = true)
+public class StubMojo extends AbstractMojo {
+
+  /**
+   * Marker printed before sleep, the test suite waits for it to terminate build.
+   */
+  public static final String SLEEP_MARKER = "FINISHER-STUB-SLEEP";
+
+  @Parameter(property = "stub.sleep", defaultValue = "0")
+  private long sleep;
+
+  @Parameter(property = "stub.fail", defaultValue = "false")
+  private boolean fail;
+
+  @Parameter(property = "stub.journal")
+  private File journal;
+
+  @Parameter(defaultValue = "${project.artifactId}", readonly = true)
+  private String artifactId;
+
+  @Parameter(defaultValue = "${mojoExecution.executionId}", readonly = true)
+  private String executionId;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (this.journal != null) {
+      writeJournal(ManagementFactory.getRuntimeMXBean().getName() + ' ' + this.artifactId + ' ' + this.executionId + '\n');
+    }
+    if (this.sleep > 0L) {
+      getLog().info(SLEEP_MARKER + ' ' + this.sleep + " ms");
+      try {
+        Thread.sleep(this.sleep);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new MojoExecutionException("Interrupted", ex);
+      }
+    }
+    if (this.fail) {
+      throw new MojoExecutionException("Stub failure of " + this.executionId + " in " + this.artifactId);
+    }
+    getLog().info("Stub executed: " + this.executionId + " (" + this.artifactId + ')');
+  }
+
+  private void writeJournal(final String line) throws MojoExecutionException {
+    final File folder = this.journal.getParentFile();
+    if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+      throw new MojoExecutionException("Can't create folder: " + folder);
+    }
+    try (final FileChannel channel = FileChannel.open(this.journal.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+         final FileLock lock = channel.lock()) {
+      channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Can't write journal: " + this.journal, ex);
+    }
+  }
+}